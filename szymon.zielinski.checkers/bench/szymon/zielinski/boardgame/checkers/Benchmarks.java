@@ -0,0 +1,307 @@
+/*
+ * Micro-benchmarks of move generation, evaluation, copying and searching,
+ * timed by hand so that they run without any library. The same benchmarks
+ * run under JMH, with its GC profiler, in the jmh module of the build.
+ *
+ * Every benchmark is run on the same fixed positions: the opening, a midgame
+ * and an endgame position, reached by playing seeded random moves from the
+ * start. Each benchmark is first warmed up, so that the JIT compiler has done
+ * its work, and then measured over several timed iterations. The report gives
+ * the mean number of operations per second with its standard deviation, and
+ * the number of bytes allocated per operation, as measured by the JVM for the
+ * benchmark thread.
+ *
+ * Usage: java szymon.zielinski.boardgame.checkers.Benchmarks [options] [regex]
+ *
+ * -warmup N      the number of warm-up iterations (default: 3)
+ * -iterations N  the number of measured iterations (default: 5)
+ * -time MS       the length of each iteration in milliseconds (default: 1000)
+ *
+ * Only the benchmarks whose names contain a match of the regex are run.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+public class Benchmarks {
+
+    // the positions every benchmark is run on
+    static final String[] POSITION_NAMES = { "opening", "midgame", "endgame" };
+
+    private static final int MIDGAME_MOVES = 16;
+    private static final int ENDGAME_PIECES = 10;
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+
+    // keeps the results of the benchmarks alive, so that no work is optimised away
+    private long sink;
+
+    // create a harness with the given number and length of iterations
+    public Benchmarks(int warmupIterations, int iterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        this.iterationNanos = iterationMillis * 1000000;
+    }
+
+    // an operation to measure
+    public abstract static class Benchmark {
+
+        private final String name;
+
+        protected Benchmark(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // carries out the operation the given number of times, returns any result
+        public abstract long run(int times);
+    }
+
+    /*
+     * Returns the positions the benchmarks are run on, in the order of
+     * POSITION_NAMES. The positions are the same in every run.
+     */
+    static CheckersGame[] positions() {
+        CheckersGame opening = new CheckersGame();
+        CheckersGame midgame = playRandomly(1, MIDGAME_MOVES, 0);
+        CheckersGame endgame = null;
+
+        // find a game that is still going on with few pieces left
+        for (long seed = 1; endgame == null; seed++) {
+            endgame = playRandomly(seed, Integer.MAX_VALUE, ENDGAME_PIECES);
+        }
+        return new CheckersGame[] { opening, midgame, endgame };
+    }
+
+    /*
+     * Plays seeded random moves from the start until the given number of moves
+     * was played, or only the given number of pieces are left. Returns null if
+     * the game ends first.
+     */
+    private static CheckersGame playRandomly(long seed, int moves, int pieces) {
+        CheckersGame game = new CheckersGame();
+        MoveList list = new MoveList();
+        Random random = new Random(seed);
+        int player = CheckersPiece.HUMAN_PLAYER;
+
+        for (int i = 0; i < moves && game.noHumanPieces() + game.noCompPieces() > pieces; i++) {
+            if (game.winner(player) != -1) {
+                return null;
+            }
+            game.generateMoves(player, list);
+            int move = list.get(random.nextInt(list.size()));
+            game.movePiece(CheckersMove.source(move), CheckersMove.dest(move), player);
+
+            if (!game.canAttackAgain()) {
+                player = (player + 1) % 2;
+            }
+        }
+
+        // benchmark positions start with the computer to move and no capture pending
+        if (player != CheckersPiece.COMPUTER_PLAYER || game.winner(player) != -1) {
+            return pieces > 0 ? null : playRandomly(seed, moves + 1, pieces);
+        }
+        return game;
+    }
+
+    // returns all benchmarks
+    static List<Benchmark> allBenchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        CheckersGame[] positions = positions();
+
+        for (int i = 0; i < positions.length; i++) {
+            final CheckersGame game = positions[i];
+            final MoveList moves = new MoveList();
+            String position = POSITION_NAMES[i];
+
+            benchmarks.add(new Benchmark("listAllMoves/" + position) {
+
+                @Override
+                public long run(int times) {
+                    long result = 0;
+                    for (int j = 0; j < times; j++) {
+                        result += game.listAllMoves(CheckersPiece.COMPUTER_PLAYER).length();
+                    }
+                    return result;
+                }
+            });
+            benchmarks.add(new Benchmark("generateMoves/" + position) {
+
+                @Override
+                public long run(int times) {
+                    long result = 0;
+                    for (int j = 0; j < times; j++) {
+                        result += game.generateMoves(CheckersPiece.COMPUTER_PLAYER, moves);
+                    }
+                    return result;
+                }
+            });
+            benchmarks.add(new Benchmark("evalGameState/" + position) {
+
+                @Override
+                public long run(int times) {
+                    double result = 0;
+                    for (int j = 0; j < times; j++) {
+                        result += CheckersGame.evalGameState(game);
+                    }
+                    return (long) result;
+                }
+            });
+            benchmarks.add(new Benchmark("copyConstructor/" + position) {
+
+                @Override
+                public long run(int times) {
+                    long result = 0;
+                    for (int j = 0; j < times; j++) {
+                        result += new CheckersGame(game).noCompPieces();
+                    }
+                    return result;
+                }
+            });
+
+            // every search starts from an empty table, or it would only look the answer up, and no book or endgame database is used
+            for (int level = CheckersGame.EASY_AI; level <= CheckersGame.HARD_AI; level++) {
+                final CheckersGame searched = new CheckersGame(game);
+                final TranspositionTable table = new TranspositionTable(1);
+                final int depth = level;
+
+                searched.setTranspositionTable(table);
+                searched.setTablebaseEnabled(false);
+                benchmarks.add(new Benchmark("searchAIMove/" + levelName(level) + "/" + position) {
+
+                    @Override
+                    public long run(int times) {
+                        long result = 0;
+                        for (int j = 0; j < times; j++) {
+                            table.clear();
+                            result += searched.searchAIMove(depth, null, 0).getMove();
+                        }
+                        return result;
+                    }
+                });
+            }
+        }
+        return benchmarks;
+    }
+
+    // returns the name of the given difficulty level
+    private static String levelName(int level) {
+        switch (level) {
+            case CheckersGame.EASY_AI:
+                return "easy";
+            case CheckersGame.MEDIUM_AI:
+                return "medium";
+            default:
+                return "hard";
+        }
+    }
+
+    // runs the given benchmark, returns a line of the report
+    public String measure(Benchmark benchmark) {
+        long batch = 1;
+
+        // warm up, and find how many operations fit into a hundredth of an iteration
+        for (int i = 0; i < warmupIterations; i++) {
+            batch = Math.max(1, iterate(benchmark, batch)[0] / 100);
+        }
+
+        double[] opsPerSecond = new double[iterations];
+        long totalOps = 0, totalBytes = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            long[] result = iterate(benchmark, batch);
+            opsPerSecond[i] = result[0] / (result[1] / 1e9);
+            totalOps += result[0];
+            totalBytes += result[2];
+        }
+
+        double mean = 0, deviation = 0;
+        for (double ops : opsPerSecond) {
+            mean += ops / iterations;
+        }
+        for (double ops : opsPerSecond) {
+            deviation += (ops - mean) * (ops - mean) / iterations;
+        }
+
+        String allocation = totalBytes < 0
+                ? "n/a"
+                : String.format(Locale.ROOT, "%.1f", (double) totalBytes / totalOps);
+        return String.format(Locale.ROOT, "%-32s %14.1f ops/s +/- %5.1f%% %12s B/op",
+                benchmark.getName(), mean, 100 * Math.sqrt(deviation) / mean, allocation);
+    }
+
+    /*
+     * Runs the benchmark in batches for the length of one iteration. Returns
+     * the number of operations, the time they took in nanoseconds and the
+     * number of bytes they allocated, or -1 if that is not known.
+     */
+    private long[] iterate(Benchmark benchmark, long batch) {
+        int times = (int) Math.min(batch, Integer.MAX_VALUE);
+        long ops = 0;
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        long elapsed;
+
+        do {
+            sink += benchmark.run(times);
+            ops += times;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+
+        long allocated = allocatedBytes();
+        return new long[] { ops, elapsed, bytes < 0 ? -1 : allocated - bytes };
+    }
+
+    // returns the number of bytes allocated by this thread so far, or -1 if not known
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    public static void main(String[] args) {
+        int warmup = 3, iterations = 5;
+        long time = 1000;
+        Pattern filter = Pattern.compile("");
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-warmup") && i + 1 < args.length) {
+                warmup = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-iterations") && i + 1 < args.length) {
+                iterations = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-time") && i + 1 < args.length) {
+                time = Long.parseLong(args[++i]);
+            } else {
+                filter = Pattern.compile(args[i]);
+            }
+        }
+
+        Benchmarks harness = new Benchmarks(warmup, iterations, time);
+
+        for (Benchmark benchmark : allBenchmarks()) {
+            if (filter.matcher(benchmark.getName()).find()) {
+                System.out.println(harness.measure(benchmark));
+            }
+        }
+
+        // print the sink, so that it is used
+        System.err.println("(" + harness.sink + ")");
+    }
+}
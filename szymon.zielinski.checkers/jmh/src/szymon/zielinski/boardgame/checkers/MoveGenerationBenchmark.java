@@ -0,0 +1,62 @@
+/*
+ * JMH benchmarks of move generation, evaluation and copying, on the opening,
+ * midgame and endgame positions of Benchmarks, with the computer to move.
+ * Every result is returned, so that JMH keeps the work from being optimised
+ * away.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGenerationBenchmark {
+
+    // the position, one of Benchmarks.POSITION_NAMES
+    @Param({ "opening", "midgame", "endgame" })
+    public String position;
+
+    private CheckersGame game;
+    private final MoveList moves = new MoveList();
+
+    @Setup
+    public void setUp() {
+        game = SearchBenchmark.position(position);
+    }
+
+    @Benchmark
+    public String listAllMoves() {
+        return game.listAllMoves(CheckersPiece.COMPUTER_PLAYER);
+    }
+
+    @Benchmark
+    public int generateMoves() {
+        return game.generateMoves(CheckersPiece.COMPUTER_PLAYER, moves);
+    }
+
+    @Benchmark
+    public double evalGameState() {
+        return CheckersGame.evalGameState(game);
+    }
+
+    @Benchmark
+    public CheckersGame copyConstructor() {
+        return new CheckersGame(game);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * JMH benchmarks of the fixed-depth search of the easy, medium and hard AI,
+ * on the positions of Benchmarks. Every search starts from an empty
+ * transposition table, or it would only look the answer up. As the searches
+ * take well under a millisecond, each is timed as a single shot, with the
+ * table cleared between iterations rather than around every call. The
+ * benchmark calls searchAIMove directly, so that no opening book is
+ * consulted, and turns the endgame database off, so that the results do not
+ * depend on the directory it runs in.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 500)
+@Measurement(iterations = 2000)
+@Fork(1)
+public class SearchBenchmark {
+
+    // the position, one of Benchmarks.POSITION_NAMES
+    @Param({ "opening", "midgame", "endgame" })
+    public String position;
+
+    // the depth of the search: CheckersGame.EASY_AI, MEDIUM_AI or HARD_AI
+    @Param({ "1", "2", "3" })
+    public int level;
+
+    private CheckersGame game;
+    private final TranspositionTable table = new TranspositionTable(1);
+
+    @Setup
+    public void setUp() {
+        game = position(position);
+        game.setTranspositionTable(table);
+        game.setTablebaseEnabled(false);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearTable() {
+        table.clear();
+    }
+
+    @Benchmark
+    public SearchResult searchAIMove() {
+        return game.searchAIMove(level, null, 0);
+    }
+
+    // returns the position of Benchmarks with the given name
+    static CheckersGame position(String name) {
+        int index = Arrays.asList(Benchmarks.POSITION_NAMES).indexOf(name);
+
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown position: " + name);
+        }
+        return Benchmarks.positions()[index];
+    }
+}
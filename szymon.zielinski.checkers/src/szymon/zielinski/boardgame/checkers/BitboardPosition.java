@@ -0,0 +1,338 @@
+/*
+ * A bitboard representation of a checkers position, used by CheckersGame.
+ *
+ * Only the 32 dark squares of the board can ever hold a piece, so every set of
+ * pieces fits into a single int. Bit b stands for square (b * 2) or
+ * (b * 2 + 1) of the linear board used by CheckersGame, whichever of the two
+ * is a valid square:
+ *
+ * [  ] [ 0] [  ] [ 1] [  ] [ 2] [  ] [ 3]
+ * [ 4] [  ] [ 5] [  ] [ 6] [  ] [ 7] [  ]
+ * [  ] [ 8] [  ] [ 9] [  ] [10] [  ] [11]
+ * [12] [  ] [13] [  ] [14] [  ] [15] [  ]
+ * [  ] [16] [  ] [17] [  ] [18] [  ] [19]
+ * [20] [  ] [21] [  ] [22] [  ] [23] [  ]
+ * [  ] [24] [  ] [25] [  ] [26] [  ] [27]
+ * [28] [  ] [29] [  ] [30] [  ] [31] [  ]
+ *
+ * Under this setup, a step down the board adds 4 or 5 to the bit from an even
+ * row and 3 or 4 from an odd row. A step up subtracts the same amounts. Whole
+ * sets of pieces are moved at once by shifting, after masking out the pieces
+ * that would wrap around the left or right border of the board. Pieces that
+ * fall off the top or the bottom of the board are shifted out of the int.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import szymon.zielinski.boardgame.base.Board;
+
+public class BitboardPosition {
+
+    public static final int SQUARES = 32;
+
+    // directions, listed in the order in which CheckersGame tries them
+    public static final int DOWN_RIGHT = 0;
+    public static final int UP_LEFT = 1;
+    public static final int DOWN_LEFT = 2;
+    public static final int UP_RIGHT = 3;
+    public static final int DIRECTIONS = 4;
+
+    // rows on which the human and the computer pieces get coronated
+    public static final int TOP_ROW = 0x0000000F;
+    public static final int BOTTOM_ROW = 0xF0000000;
+
+    private static final int EVEN_ROWS = 0x0F0F0F0F;
+    private static final int ODD_ROWS = 0xF0F0F0F0;
+    private static final int EVEN_ROWS_NOT_RIGHT = 0x07070707;
+    private static final int ODD_ROWS_NOT_LEFT = 0xE0E0E0E0;
+
+    private int humanPieces, compPieces, kings;
+
+    // create an empty position
+    public BitboardPosition() {
+    }
+
+    // copy constructor
+    public BitboardPosition(BitboardPosition another) {
+        this.humanPieces = another.humanPieces;
+        this.compPieces = another.compPieces;
+        this.kings = another.kings;
+    }
+
+    // replaces all pieces with the given sets, the kings being among the others
+    void set(int humanPieces, int compPieces, int kings) {
+        this.humanPieces = humanPieces;
+        this.compPieces = compPieces;
+        this.kings = kings;
+    }
+
+    // returns the bit that stands for the given (valid) square of the board
+    public static int bit(int square) {
+        return square >> 1;
+    }
+
+    // returns the square of the linear board that the given bit stands for
+    public static int square(int bit) {
+        return (bit << 1) + (((bit >> 2) & 1) ^ 1);
+    }
+
+    // moves every piece of the set one square in the given direction
+    public static int step(int pieces, int direction) {
+        switch (direction) {
+            case DOWN_RIGHT:
+                return ((pieces & EVEN_ROWS_NOT_RIGHT) << 5) | ((pieces & ODD_ROWS) << 4);
+            case UP_LEFT:
+                return ((pieces & EVEN_ROWS) >>> 4) | ((pieces & ODD_ROWS_NOT_LEFT) >>> 5);
+            case DOWN_LEFT:
+                return ((pieces & EVEN_ROWS) << 4) | ((pieces & ODD_ROWS_NOT_LEFT) << 3);
+            case UP_RIGHT:
+                return ((pieces & EVEN_ROWS_NOT_RIGHT) >>> 3) | ((pieces & ODD_ROWS) >>> 4);
+            default:
+                return 0;
+        }
+    }
+
+    // returns the pieces of the given player
+    public int pieces(int player) {
+        return player == CheckersPiece.HUMAN_PLAYER ? humanPieces : compPieces;
+    }
+
+    // returns all kings on the board
+    public int kings() {
+        return kings;
+    }
+
+    // returns all empty squares
+    public int empty() {
+        return ~(humanPieces | compPieces);
+    }
+
+    // returns the number of pieces owned by the given player
+    public int count(int player) {
+        return Integer.bitCount(pieces(player));
+    }
+
+    // return the owner of the piece at the given position
+    public int ownerAt(int square) {
+        if (square >= CheckersGame.BOARD_SIZE || square < 0) {
+            return Board.INPUT_ERROR;
+        }
+        if (!CheckersGame.VALID_SQUARE[square]) {
+            return Board.EMPTY_SQUARE;
+        }
+
+        int mask = 1 << bit(square);
+
+        if ((humanPieces & mask) != 0) {
+            return CheckersPiece.HUMAN_PLAYER;
+        }
+        if ((compPieces & mask) != 0) {
+            return CheckersPiece.COMPUTER_PLAYER;
+        }
+        return Board.EMPTY_SQUARE;
+    }
+
+    // return the type of the piece at the given position
+    public int typeAt(int square) {
+        int owner = ownerAt(square);
+
+        if (owner < 0) {
+            return owner;
+        }
+
+        return (kings & (1 << bit(square))) != 0 ? CheckersPiece.KING : CheckersPiece.CHECKER;
+    }
+
+    // add a piece at the given position. return false if the square is taken
+    public boolean addPiece(int square, int owner, int type) {
+        if (ownerAt(square) != Board.EMPTY_SQUARE || !CheckersGame.VALID_SQUARE[square]) {
+            return false;
+        }
+
+        int mask = 1 << bit(square);
+
+        if (owner == CheckersPiece.HUMAN_PLAYER) {
+            humanPieces |= mask;
+        } else {
+            compPieces |= mask;
+        }
+        if (type == CheckersPiece.KING) {
+            kings |= mask;
+        }
+        return true;
+    }
+
+    // remove the piece at the given position. return false if there is none
+    public boolean removePiece(int square) {
+        if (ownerAt(square) < 0) {
+            return false;
+        }
+
+        int mask = ~(1 << bit(square));
+
+        humanPieces &= mask;
+        compPieces &= mask;
+        kings &= mask;
+        return true;
+    }
+
+    /*
+     * Moves the piece on the source square to the (empty) destination square,
+     * coronating it if asked to. The squares are not validated.
+     */
+    public void move(int source, int dest, boolean promotion) {
+        int from = 1 << bit(source);
+        int to = 1 << bit(dest);
+
+        if ((humanPieces & from) != 0) {
+            humanPieces ^= from | to;
+        } else {
+            compPieces ^= from | to;
+        }
+        if ((kings & from) != 0 || promotion) {
+            kings = (kings & ~from) | to;
+        }
+    }
+
+    // takes back a move made with move(), including the coronation, if any
+    public void unmove(int source, int dest, boolean promotion) {
+        int from = 1 << bit(source);
+        int to = 1 << bit(dest);
+
+        if ((humanPieces & to) != 0) {
+            humanPieces ^= from | to;
+        } else {
+            compPieces ^= from | to;
+        }
+        if ((kings & to) != 0) {
+            kings &= ~to;
+            if (!promotion) {
+                kings |= from;
+            }
+        }
+    }
+
+    // checks if a piece of the given player may step in the given direction
+    private boolean canStep(int piece, int player, int direction) {
+
+        // kings move both ways, the computer moves down and the human moves up
+        if ((kings & piece) != 0) {
+            return true;
+        }
+        return (direction == DOWN_RIGHT || direction == DOWN_LEFT)
+                == (player == CheckersPiece.COMPUTER_PLAYER);
+    }
+
+    /*
+     * Returns the destination of a non-capturing move of the given piece in the
+     * given direction, or 0 if there is no such move.
+     */
+    public int moveTarget(int piece, int player, int direction) {
+        if (!canStep(piece, player, direction)) {
+            return 0;
+        }
+        return step(piece, direction) & empty();
+    }
+
+    /*
+     * Returns the destination of a capturing move of the given piece in the
+     * given direction, or 0 if there is no such move.
+     */
+    public int jumpTarget(int piece, int player, int direction) {
+        if (!canStep(piece, player, direction)) {
+            return 0;
+        }
+        int opponent = pieces((player + 1) % 2);
+        return step(step(piece, direction) & opponent, direction) & empty();
+    }
+
+    // returns the pieces of the given player that can make a non-capturing move
+    public int movers(int player) {
+        int empty = empty();
+        int own = pieces(player);
+        int down = (step(empty, UP_LEFT) | step(empty, UP_RIGHT));
+        int up = (step(empty, DOWN_RIGHT) | step(empty, DOWN_LEFT));
+
+        if (player == CheckersPiece.HUMAN_PLAYER) {
+            return (up & own) | (down & own & kings);
+        }
+        return (down & own) | (up & own & kings);
+    }
+
+    // returns the pieces of the given player that can capture
+    public int jumpers(int player) {
+        int empty = empty();
+        int own = pieces(player);
+        int opponent = pieces((player + 1) % 2);
+        int down = step(step(empty, UP_LEFT) & opponent, UP_LEFT)
+                | step(step(empty, UP_RIGHT) & opponent, UP_RIGHT);
+        int up = step(step(empty, DOWN_RIGHT) & opponent, DOWN_RIGHT)
+                | step(step(empty, DOWN_LEFT) & opponent, DOWN_LEFT);
+
+        if (player == CheckersPiece.HUMAN_PLAYER) {
+            return (up & own) | (down & own & kings);
+        }
+        return (down & own) | (up & own & kings);
+    }
+
+    // returns the row on which the pieces of the given player get coronated
+    public static int promotionRow(int player) {
+        return player == CheckersPiece.HUMAN_PLAYER ? TOP_ROW : BOTTOM_ROW;
+    }
+
+    // adds all non-capturing moves of the given player to the list
+    public void generateMoves(int player, MoveList list) {
+        int movers = movers(player);
+        int promotionRow = promotionRow(player);
+
+        while (movers != 0) {
+            int piece = movers & -movers;
+            int source = square(Integer.numberOfTrailingZeros(piece));
+            boolean checker = (piece & kings) == 0;
+
+            for (int j = 0; j < DIRECTIONS; j++) {
+                int target = moveTarget(piece, player, j);
+                if (target != 0) {
+                    list.add(CheckersMove.quiet(source, square(Integer.numberOfTrailingZeros(target)),
+                            checker && (target & promotionRow) != 0));
+                }
+            }
+            movers ^= piece;
+        }
+    }
+
+    /*
+     * Adds all captures of the given player to the list, made by the pieces in
+     * the given set only.
+     */
+    public void generateCaptures(int player, int pieces, MoveList list) {
+        int jumpers = jumpers(player) & pieces;
+        int promotionRow = promotionRow(player);
+
+        while (jumpers != 0) {
+            int piece = jumpers & -jumpers;
+            int source = square(Integer.numberOfTrailingZeros(piece));
+            boolean checker = (piece & kings) == 0;
+
+            for (int j = 0; j < DIRECTIONS; j++) {
+                int target = jumpTarget(piece, player, j);
+                if (target != 0) {
+                    list.add(CheckersMove.capture(source, square(Integer.numberOfTrailingZeros(target)),
+                            checker && (target & promotionRow) != 0));
+                }
+            }
+            jumpers ^= piece;
+        }
+    }
+
+    /*
+     * Rotates the board and swaps the owners of all pieces, so that the position
+     * can be viewed from the other player's perspective. Rotating the board
+     * maps square s onto square 63 - s, which reverses the order of the bits.
+     */
+    public void swapPlayers() {
+        int temp = humanPieces;
+        humanPieces = Integer.reverse(compPieces);
+        compPieces = Integer.reverse(temp);
+        kings = Integer.reverse(kings);
+    }
+}
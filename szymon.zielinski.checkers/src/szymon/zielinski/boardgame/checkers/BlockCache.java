@@ -0,0 +1,65 @@
+/*
+ * A bounded cache of decompressed blocks of an endgame database, shared by all
+ * threads that probe it. Once the cache is full, the least recently used block
+ * makes room for a new one.
+ *
+ * The blocks are spread over a number of segments by their number, each with
+ * its own lock and its own share of the capacity, so that threads probing
+ * different blocks seldom wait for each other. The least recently used block
+ * is therefore only found within a segment, which is close enough.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class BlockCache {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment[] segments;
+
+    // create a cache of up to the given number of blocks, at least one per segment
+    BlockCache(int capacity) {
+        int noSegments = Math.max(1, Math.min(MAX_SEGMENTS, capacity));
+        segments = new Segment[noSegments];
+
+        for (int i = 0; i < noSegments; i++) {
+            segments[i] = new Segment(Math.max(1, capacity / noSegments));
+        }
+    }
+
+    // returns the cached block with the given number, or null if it is not in the cache
+    byte[] get(int block) {
+        Segment segment = segments[block % segments.length];
+        synchronized (segment) {
+            return segment.get(block);
+        }
+    }
+
+    // adds a block to the cache, dropping the least recently used block of its segment if need be
+    void put(int block, byte[] data) {
+        Segment segment = segments[block % segments.length];
+        synchronized (segment) {
+            segment.put(block, data);
+        }
+    }
+
+    // a part of the cache, with its blocks kept from the least to the most recently used
+    private static class Segment extends LinkedHashMap<Integer, byte[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+            return size() > capacity;
+        }
+    }
+}
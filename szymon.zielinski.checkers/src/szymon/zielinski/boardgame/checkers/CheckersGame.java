@@ -1,6 +1,6 @@
 /*
- * This class handles the logic of a game of checkers. Uses Piece, CheckersPiece
- * , Square and Board.
+ * This class handles the logic of a game of checkers. Uses CheckersPiece and
+ * BitboardPosition.
  * 
  * The board is represented as a linear array of Squares. A linear array was
  * chosen over a 2d array to simplify the application of game rules. 
@@ -23,13 +23,19 @@
  * 50 -  7 = 43, 43 != 44
  * 50 - 9 = 41, 41 != 44
  * Therefore the move is invalid.
+ * 
+ * Internally, the pieces are stored in a BitboardPosition, which finds all
+ * valid moves and captures at once with shifts and masks.
  */
 package szymon.zielinski.boardgame.checkers;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
 
 import szymon.zielinski.boardgame.base.Board;
-import szymon.zielinski.boardgame.base.Piece;
 
 public class CheckersGame {
 
@@ -63,68 +69,104 @@ public class CheckersGame {
         1.2, 0, 1.2, 0, 1.2, 0, 1.2, 0
     };
     
-    private Board checkersBoard;
-    private int noHumanPieces, noCompPieces, AIType;
+    // marks that no piece has to capture again
+    private static final int NO_SQUARE = -1;
+    
+    // bits of the undo information kept by makeMove
+    private static final int UNDO_SQUARE_MASK = 0x7F;
+    private static final int UNDO_CAPTURED_KING = 0x80;
+    
+    private BitboardPosition position;
+    private int AIType;
+    
+    // the Zobrist key of the pieces and of the consecutive captures, if any
+    private long hashKey;
+    private TranspositionTable transpositionTable;
+    private Tablebase tablebase;
+    private boolean tablebaseEnabled = true;
+    private OpeningBook openingBook;
+    private EvalWeights evalWeights = EvalWeights.DEFAULT;
+
+    // the score of the pieces on the board in centipieces, kept up to date by every change
+    private int score;
     
-    // consecutiveAttack stores conecutive capturing moves, if any are possible
-    private String consecutiveAttack;
+    // the number of threads the AI searches with, and the pool they run in
+    private int searchThreads = 1;
+    private ForkJoinPool searchPool;
+
+    // run now and then by the searches of this game, not by those of its copies
+    private Runnable searchCheckpoint;
+
+    // the selective search features the AI uses, off until self-play shows they gain strength
+    private boolean lateMoveReductions = false;
+    private boolean futilityPruning = false;
+    
+    // consecutiveAttack stores the square of the piece that can capture again, if any
+    private int consecutiveAttack;
+    
+    // a buffer for methods that need to list moves internally
+    private final MoveList moveBuffer = new MoveList();
+    
+    // moves carried out by makeMove, and what is needed to take them back
+    private int[] madeMoves = new int[16];
+    private int[] undoInfo = new int[16];
+    private long[] undoKeys = new long[16];
+    private int[] undoScores = new int[16];
+    private int noMadeMoves;
 
     // set up the game board
     CheckersGame() {
-        checkersBoard = new Board(BOARD_SIZE);
-        noHumanPieces = 0;
-        noCompPieces = 0;
+        position = new BitboardPosition();
         AIType = EASY_AI;
-        consecutiveAttack = "";
-
-        Piece tempChecker;
+        consecutiveAttack = NO_SQUARE;
 
-        for (int i = 0; i < checkersBoard.size(); i++) {
+        for (int i = 0; i < BOARD_SIZE; i++) {
             if (i < 24
                     && VALID_SQUARE[i] == true) {
-                tempChecker = new CheckersPiece(CheckersPiece.COMPUTER_PLAYER, CheckersPiece.CHECKER);
-                checkersBoard.addPiece(i, tempChecker);
-                noCompPieces++;
+                position.addPiece(i, CheckersPiece.COMPUTER_PLAYER, CheckersPiece.CHECKER);
                 continue;
             }
 
             if (i > 39 && VALID_SQUARE[i] == true) {
-                tempChecker = new CheckersPiece(CheckersPiece.HUMAN_PLAYER, CheckersPiece.CHECKER);
-                checkersBoard.addPiece(i, tempChecker);
-                noHumanPieces++;
+                position.addPiece(i, CheckersPiece.HUMAN_PLAYER, CheckersPiece.CHECKER);
                 continue;
             }
         }
+        hashKey = Zobrist.pieces(position);
+        score = scorePieces();
     }
 
     // copy constructor
     public CheckersGame(CheckersGame another) {
-        this.checkersBoard = new Board(BOARD_SIZE);
-        for (int i = 0; i < this.checkersBoard.size(); i++) {
-            if (another.getOwnerAt(i) != -1) {
-                this.checkersBoard.addPiece(i, new CheckersPiece(another.checkersBoard.pieceOwnerAt(i), another.checkersBoard.pieceTypeAt(i)));
-            }
-        }
-        this.noHumanPieces = another.noHumanPieces;
-        this.noCompPieces = another.noCompPieces;
+        this.position = new BitboardPosition(another.position);
         this.AIType = another.AIType;
         this.consecutiveAttack = another.consecutiveAttack;
+        this.hashKey = another.hashKey;
+        this.score = another.score;
+        this.transpositionTable = another.transpositionTable;
+        this.tablebase = another.tablebase;
+        this.tablebaseEnabled = another.tablebaseEnabled;
+        this.openingBook = another.openingBook;
+        this.evalWeights = another.evalWeights;
+        this.searchThreads = another.searchThreads;
+        this.searchPool = another.searchPool;
+        this.lateMoveReductions = another.lateMoveReductions;
+        this.futilityPruning = another.futilityPruning;
     }
 
     // returns the winner, or -1 if the game is still in progress
     public int winner(int currentPlayer) {
-        String attacksAndMoves = listCaptures(currentPlayer) + listMoves(currentPlayer);
-        
-        if (noHumanPieces == 0) {
+        if (noHumanPieces() == 0) {
             return 1;
         } 
         
-        if (noCompPieces == 0) {
+        if (noCompPieces() == 0) {
             return 0;
         } 
         
         // if the current player is out of lagal moves, the other player has won
-        if (attacksAndMoves.length() == 0) {
+        if (consecutiveAttack == NO_SQUARE
+                && (position.movers(currentPlayer) | position.jumpers(currentPlayer)) == 0) {
             return (++currentPlayer) % 2;
         }
         
@@ -133,12 +175,12 @@ public class CheckersGame {
 
     // returns the number of player pieces
     public int noHumanPieces() {
-        return noHumanPieces;
+        return position.count(CheckersPiece.HUMAN_PLAYER);
     }
 
     // returns the number of computer pieces
     public int noCompPieces() {
-        return noCompPieces;
+        return position.count(CheckersPiece.COMPUTER_PLAYER);
     }
 
     /* 
@@ -147,522 +189,483 @@ public class CheckersGame {
      */
     public boolean movePiece(int sourceSquare, int destSquare, int player) {
 
-        if (!isValid(sourceSquare, destSquare, player)) {
+        generateMoves(player, moveBuffer);
+        int move = moveBuffer.find(sourceSquare, destSquare);
+
+        if (move == CheckersMove.NONE) {
             return false;
         }
 
-        CheckersPiece movedPiece =
-                (CheckersPiece) checkersBoard.removePiece(sourceSquare);
+        makeMove(move);
+        return true;
+    }
 
-        // coronate moved piece when appropriate
-        if (destSquare < 8 && movedPiece.getOwner() == CheckersPiece.HUMAN_PLAYER) {
-            movedPiece.coronate();
-        } else if (destSquare > 55 && movedPiece.getOwner() == CheckersPiece.COMPUTER_PLAYER) {
-            movedPiece.coronate();
+    /*
+     * Carries out a move produced by generateMoves, without validating it, and
+     * remembers what is needed to take it back with unmakeMove. The owner of
+     * the moved piece can capture again only if the move was a capture that
+     * did not coronate the piece.
+     */
+    public void makeMove(int move) {
+        int sourceSquare = CheckersMove.source(move);
+        int destSquare = CheckersMove.dest(move);
+        int player = position.ownerAt(sourceSquare);
+        int movedType = position.typeAt(sourceSquare);
+        int undo = consecutiveAttack + 1;
+
+        // remember the move
+        if (noMadeMoves == madeMoves.length) {
+            madeMoves = Arrays.copyOf(madeMoves, noMadeMoves * 2);
+            undoInfo = Arrays.copyOf(undoInfo, noMadeMoves * 2);
+            undoKeys = Arrays.copyOf(undoKeys, noMadeMoves * 2);
+            undoScores = Arrays.copyOf(undoScores, noMadeMoves * 2);
+        }
+        undoKeys[noMadeMoves] = hashKey;
+        undoScores[noMadeMoves] = score;
+
+        // capturing move - remove captured piece
+        if (CheckersMove.isCapture(move)) {
+            int capturedSquare = CheckersMove.captured(move);
+            int capturedType = position.typeAt(capturedSquare);
+            if (capturedType == CheckersPiece.KING) {
+                undo |= UNDO_CAPTURED_KING;
+            }
+            hashKey ^= Zobrist.piece((player + 1) % 2, capturedType, capturedSquare);
+            score -= pieceScore((player + 1) % 2, capturedType, capturedSquare);
+            position.removePiece(capturedSquare);
         }
 
-        checkersBoard.addPiece(destSquare, movedPiece);
+        // move the piece, coronate it when appropriate
+        position.move(sourceSquare, destSquare, CheckersMove.isPromotion(move));
+        hashKey ^= Zobrist.piece(player, movedType, sourceSquare)
+                ^ Zobrist.piece(player, position.typeAt(destSquare), destSquare);
+        score += pieceScore(player, position.typeAt(destSquare), destSquare)
+                - pieceScore(player, movedType, sourceSquare);
 
-        // check if move was a capturing move
-        int difference = Math.abs(sourceSquare - destSquare);
-        
-        // for non-capturing moves, difference will be less than 10 
-        if (difference < 10) {
-            consecutiveAttack = "";
-            return true;
-        }
+        madeMoves[noMadeMoves] = move;
+        undoInfo[noMadeMoves] = undo;
+        noMadeMoves++;
 
-        // capturing move happened - remove captured piece
-        Piece middlePiece = checkersBoard.removePiece((sourceSquare + destSquare) / 2);
-        
-        if (middlePiece.getOwner() == CheckersPiece.HUMAN_PLAYER) {
-            noHumanPieces--;
-        } else {
-            noCompPieces--;
+        if (consecutiveAttack != NO_SQUARE) {
+            hashKey ^= Zobrist.consecutiveAttack(consecutiveAttack);
         }
 
         // check if consecutive capturing moves are possible
-        consecutiveAttack = listCaptures(destSquare, player);
-
-        return true;
-    }
-
-    // lists all valid moves available to the player
-    public String listAllMoves(int player) {
-        if (consecutiveAttack.length() != 0) {
-            return consecutiveAttack;
-        }
-        String legalAttacks = listCaptures(player);
-        if (legalAttacks.length() != 0) {
-            return legalAttacks;
-        }
-        String legalMoves = listMoves(player);
-        if (legalMoves.length() != 0) {
-            return legalMoves;
-        }
-        return "";
-    }
-    
-    // checks if a move is valid
-    public boolean isValid(int source, int dest, int player) {
-        
-        String move = " " + source + " " + dest + " ";
-        String legalMoves = listAllMoves(player);
-        
-        if (legalMoves.length() != 0) {
-            return (" " + legalMoves).contains(move);
+        if (CheckersMove.isCapture(move) && !CheckersMove.isPromotion(move)
+                && (position.jumpers(player) & (1 << BitboardPosition.bit(destSquare))) != 0) {
+            consecutiveAttack = destSquare;
+            hashKey ^= Zobrist.consecutiveAttack(consecutiveAttack);
+        } else {
+            consecutiveAttack = NO_SQUARE;
         }
-        
-        return false;
     }
 
-    /* lists all captures available to the given player
-     * Attacks are listed in the form: <source> + " " + <destination> + " "
+    /*
+     * Takes back the last move carried out by makeMove, restoring the captured
+     * piece, the coronation and the consecutive captures, if any.
      */
-    public String listCaptures(int player) {
-        if (consecutiveAttack.length() != 0) {
-            return consecutiveAttack;
+    public void unmakeMove() {
+        if (noMadeMoves == 0) {
+            throw new IllegalStateException("There is no move to take back.");
         }
 
-        String attackList = "";
-
-        for (int i = 0; i < checkersBoard.size(); i++) {
-            attackList += listCaptures(i, player);
+        noMadeMoves--;
+        int move = madeMoves[noMadeMoves];
+        int undo = undoInfo[noMadeMoves];
+        int destSquare = CheckersMove.dest(move);
+        
+        position.unmove(CheckersMove.source(move), destSquare, CheckersMove.isPromotion(move));
+        
+        if (CheckersMove.isCapture(move)) {
+            int opponent = (position.ownerAt(CheckersMove.source(move)) + 1) % 2;
+            int capturedType = (undo & UNDO_CAPTURED_KING) != 0 ? CheckersPiece.KING : CheckersPiece.CHECKER;
+            position.addPiece(CheckersMove.captured(move), opponent, capturedType);
         }
 
-        return attackList;
+        consecutiveAttack = (undo & UNDO_SQUARE_MASK) - 1;
+        hashKey = undoKeys[noMadeMoves];
+        score = undoScores[noMadeMoves];
     }
 
-    /* List all captures available to the given player from the given position 
-     * on the board. Captures are listed in the form: 
-     * <source> + " " + <destination> + " "
+    /*
+     * Returns the Zobrist key of the game with the given player to move. Equal
+     * positions have equal keys, so the key identifies a position in the
+     * transposition table.
      */
-    public String listCaptures(int square, int player) {
-        String attackList = "";
-
-        // try 4 possible moves each time, add to list if valid
-        int posAttack[] = {square + 18, square - 18, square + 14, square - 14};
-
-        for (int j = 0; j < posAttack.length; j++) {
-            if (validCapture(square, posAttack[j], player)) {
-                attackList += square + " " + posAttack[j] + " ";
-            }
-        }
-        return attackList;
+    public long hashKey(int player) {
+        return hashKey ^ Zobrist.sideToMove(player);
     }
 
-    // list all non-capturing moves available for the given player
-    public String listMoves(int player) {
-        String moveList = "";
-
-        //try 4 possible moves each time, add to list if valid
-        for (int i = 0; i < checkersBoard.size(); i++) {
-            int posMove[] = {i + 9, i - 9, i + 7, i - 7};
-
-            for (int j = 0; j < posMove.length; j++) {
-                if (validMove(i, posMove[j], player)) {
-                    moveList += i + " " + posMove[j] + " ";//",";
-                }
-            }
+    // returns the transposition table used by the AI
+    public TranspositionTable getTranspositionTable() {
+        if (transpositionTable == null) {
+            return TranspositionTable.getDefault();
         }
-        return moveList;
+        return transpositionTable;
     }
 
-    // checks if the given capture is valid
-    private boolean validCapture(int source, int dest, int player) {
-        int tempOwner = checkersBoard.pieceOwnerAt(source);
-        int tempType = checkersBoard.pieceTypeAt(source);
+    // changes the transposition table used by the AI
+    public void setTranspositionTable(TranspositionTable table) {
+        transpositionTable = table;
+    }
 
-        // check owner of the piece and desination square
-        if (tempOwner != player
-                || checkersBoard.pieceOwnerAt(dest) != Board.EMPTY_SQUARE) {
-            return false;
+    // returns the endgame database the AI probes, or null if there is none or it is turned off
+    public Tablebase getTablebase() {
+        if (!tablebaseEnabled) {
+            return null;
         }
-
-        // player 1 - starts bottom, moves upwards
-        if (tempType == CheckersPiece.CHECKER && player == CheckersPiece.HUMAN_PLAYER) {
-            if (source - dest > 10) {
-                return validAttackUp(source, dest, player);
-            } else {
-                return false;
-            }
+        if (tablebase == null) {
+            return Tablebase.getDefault();
         }
+        return tablebase;
+    }
 
-        // computer - starts top, moves downwards
-        if (tempType == CheckersPiece.CHECKER && player == CheckersPiece.COMPUTER_PLAYER) {
-            if (dest - source > 10) {
-                return validAttackDown(source, dest, player);
-            } else {
-                return false;
-            }
-        }
+    // changes the endgame database the AI probes, null for the default one
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
 
-        // move up OR down if king
-        if (tempType == CheckersPiece.KING) {
-            if (Math.abs(source - dest) > 10) {
-                return validAttackDown(source, dest, player)
-                        || validAttackUp(source, dest, player);
-            } else {
-                return false;
-            }
-        }
-        return false;
+    // checks if the AI probes an endgame database
+    public boolean isTablebaseEnabled() {
+        return tablebaseEnabled;
     }
 
-    // checks if the given non-capturing move is valid
-    private boolean validMove(int source, int dest, int player) {
-        int tempOwner = checkersBoard.pieceOwnerAt(source);
-        int tempType = checkersBoard.pieceTypeAt(source);
+    // turns the endgame database off, so that the AI searches every position, even if there is a default one
+    public void setTablebaseEnabled(boolean enabled) {
+        tablebaseEnabled = enabled;
+    }
 
-        // check owner of the piece and destination square
-        if (tempOwner != player
-                || checkersBoard.pieceOwnerAt(dest) != Board.EMPTY_SQUARE) {
-            return false;
+    // returns the opening book the AI plays from, or null if there is none
+    public OpeningBook getOpeningBook() {
+        if (openingBook == null) {
+            return OpeningBook.getDefault();
         }
+        return openingBook;
+    }
 
-        // player 1 - starts bottom, moves upwards
-        if (tempType == CheckersPiece.CHECKER && player == CheckersPiece.HUMAN_PLAYER) {
-            if (source - dest < 10) {
-                return validMoveUp(source, dest);
-            } else {
-                return false;
-            }
-        }
+    // changes the opening book the AI plays from
+    public void setOpeningBook(OpeningBook book) {
+        openingBook = book;
+    }
 
-        // computer - starts top, moves downwards
-        if (tempType == CheckersPiece.CHECKER && player == CheckersPiece.COMPUTER_PLAYER) {
-            // test for a move range
-            if (dest - source < 10) {
-                return validMoveDown(source, dest);
-            } else {
-                return false;
-            }
-        }
+    // returns the weights of the evaluation function
+    public EvalWeights getEvalWeights() {
+        return evalWeights;
+    }
 
-        // move up OR down
-        if (tempType == CheckersPiece.KING) {
-            if (Math.abs(source - dest) < 10) {
-                return validMoveDown(source, dest)
-                        || validMoveUp(source, dest);
-            } else {
-                return false;
-            }
-        }
-        return false;
+    /*
+     * Changes the weights of the evaluation function. Games with different
+     * weights should not share a transposition table, since the stored scores
+     * depend on the weights.
+     */
+    public void setEvalWeights(EvalWeights weights) {
+        evalWeights = weights;
+        score = scorePieces();
     }
 
-    // checks if the given move upwards on the board is valid
-    private boolean validMoveUp(int sourceSquare, int destSquare) {
-        int difference = sourceSquare - destSquare;
+    // returns the number of threads the AI searches with
+    public int getSearchThreads() {
+        return searchThreads;
+    }
 
-        // the left-border case
-        if (sourceSquare % 8 == 0) {
-            return difference == 7;
+    /*
+     * Changes the number of threads the AI searches with. With more than one
+     * thread, the search runs helper threads in the search pool, which share
+     * the transposition table.
+     */
+    public void setSearchThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Illegal number of threads. Number cannot be < 1. Found: " + threads);
         }
+        searchThreads = threads;
+    }
 
-        //right-border case
-        if (sourceSquare % 8 == 7) {
-            return difference == 9;
+    // returns the pool that the helper threads of the search run in
+    public ForkJoinPool getSearchPool() {
+        if (searchPool == null) {
+            return ForkJoinPool.commonPool();
         }
+        return searchPool;
+    }
 
-        return difference == 7 || difference == 9;
+    // changes the pool that the helper threads of the search run in
+    public void setSearchPool(ForkJoinPool pool) {
+        searchPool = pool;
     }
 
-    // checks if the given move downwards on the baord is valid
-    private boolean validMoveDown(int sourceSquare, int destSquare) {
-        int difference = destSquare - sourceSquare;
+    // returns the checkpoint the searches of this game run, or null if none
+    public Runnable getSearchCheckpoint() {
+        return searchCheckpoint;
+    }
 
-        // the left-border case
-        if (sourceSquare % 8 == 0) {
-            return difference == 9;
-        }
+    /*
+     * Changes the checkpoint the searches of this game run, on the thread of
+     * the search, every time they check the clock: every 1024 positions. A
+     * checkpoint may block, to let other work run, but the search goes on
+     * counting its time meanwhile. It is not copied with the game, as it
+     * belongs to the work the game is searched for.
+     */
+    public void setSearchCheckpoint(Runnable checkpoint) {
+        searchCheckpoint = checkpoint;
+    }
 
-        //right-border case
-        if (sourceSquare % 8 == 7) {
-            return difference == 7;
-        }
+    // checks if the AI searches the quiet moves it tries late less deeply
+    public boolean isLateMoveReductions() {
+        return lateMoveReductions;
+    }
 
-        return difference == 7 || difference == 9;
+    /*
+     * Turns late move reductions on or off. With them, the AI searches quiet
+     * moves that come late in its move ordering one ply less deeply, unless
+     * they turn out better than expected. They are off by default.
+     */
+    public void setLateMoveReductions(boolean enabled) {
+        lateMoveReductions = enabled;
     }
 
-    // checks if the capturing move upwards is valid 
-    private boolean validAttackUp(int sourceSquare, int destSquare, int player) {
-        int difference = sourceSquare - destSquare;
-        int midSquare = (sourceSquare + destSquare) / 2;
+    // checks if the AI skips quiet moves near the depth limit that cannot catch up
+    public boolean isFutilityPruning() {
+        return futilityPruning;
+    }
 
-        if (checkersBoard.pieceOwnerAt(midSquare) == player
-                || checkersBoard.pieceOwnerAt(midSquare) == Board.EMPTY_SQUARE) {
-            return false;
-        }
+    /*
+     * Turns futility pruning on or off. With it, the AI does not search quiet
+     * moves one or two plies before the depth limit if the position is so bad
+     * that they are not expected to change the outcome. It is off by default.
+     */
+    public void setFutilityPruning(boolean enabled) {
+        futilityPruning = enabled;
+    }
 
-        // left border case
-        if (sourceSquare % 8 == 0 || sourceSquare % 8 == 1) {
-            return difference == 14;
+    /*
+     * Fills the list with all valid moves available to the player and returns
+     * their number. Captures are compulsory, so if the player can capture, only
+     * captures are listed.
+     */
+    public int generateMoves(int player, MoveList moves) {
+        generateCaptures(player, moves);
+        
+        if (moves.isEmpty() && consecutiveAttack == NO_SQUARE) {
+            position.generateMoves(player, moves);
         }
+        return moves.size();
+    }
 
-        // right border case
-        if (sourceSquare % 8 == 7 || sourceSquare % 8 == 6) {
-            return difference == 18;
+    /*
+     * Fills the list with all captures available to the player and returns
+     * their number. If a piece has to capture again, only its captures are
+     * listed.
+     */
+    public int generateCaptures(int player, MoveList moves) {
+        moves.clear();
+
+        if (consecutiveAttack != NO_SQUARE) {
+            position.generateCaptures(player, 1 << BitboardPosition.bit(consecutiveAttack), moves);
+        } else {
+            position.generateCaptures(player, position.pieces(player), moves);
         }
+        return moves.size();
+    }
 
-        return difference == 14 || difference == 18;
+    // lists all valid moves available to the player
+    public String listAllMoves(int player) {
+        generateMoves(player, moveBuffer);
+        return moveBuffer.toString();
     }
     
-    // checks if the capturing move downwards is valid 
-    private boolean validAttackDown(int sourceSquare, int destSquare, int player) {
-        int difference = destSquare - sourceSquare;
-        int midSquare = (sourceSquare + destSquare) / 2;
+    // checks if a move is valid
+    public boolean isValid(int source, int dest, int player) {
+        generateMoves(player, moveBuffer);
+        return moveBuffer.find(source, dest) != CheckersMove.NONE;
+    }
 
-        if (checkersBoard.pieceOwnerAt(midSquare) == player
-                || checkersBoard.pieceOwnerAt(midSquare) == Board.EMPTY_SQUARE) {
-            return false;
-        }
+    /* lists all captures available to the given player
+     * Attacks are listed in the form: <source> + " " + <destination> + " "
+     */
+    public String listCaptures(int player) {
+        generateCaptures(player, moveBuffer);
+        return moveBuffer.toString();
+    }
 
-        // left border case
-        if (sourceSquare % 8 == 0 || sourceSquare % 8 == 1) {
-            return difference == 18;
+    /* List all captures available to the given player from the given position 
+     * on the board. Captures are listed in the form: 
+     * <source> + " " + <destination> + " "
+     */
+    public String listCaptures(int square, int player) {
+        if (position.ownerAt(square) != player) {
+            return "";
         }
 
-        // right border case
-        if (sourceSquare % 8 == 7 || sourceSquare % 8 == 6) {
-            return difference == 14;
-        }
+        moveBuffer.clear();
+        position.generateCaptures(player, 1 << BitboardPosition.bit(square), moveBuffer);
+        return moveBuffer.toString();
+    }
 
-        return difference == 14 || difference == 18;
+    // list all non-capturing moves available for the given player
+    public String listMoves(int player) {
+        moveBuffer.clear();
+        position.generateMoves(player, moveBuffer);
+        return moveBuffer.toString();
     }
     
     // returns a random, valid move
-    private String randomAIMove(){
+    private int randomAIMove(){
         
-        String moves = listAllMoves(CheckersPiece.COMPUTER_PLAYER);         
-        String[] splitMoves = moves.split(" ");
+        generateMoves(CheckersPiece.COMPUTER_PLAYER, moveBuffer);
             
         Random generator = new Random();
-        int randomIndex = generator.nextInt(splitMoves.length);
-        if (randomIndex % 2 != 0) {
-            randomIndex--;
-        }
-        return splitMoves[randomIndex] + " " + splitMoves[randomIndex + 1] + " ";
+        return moveBuffer.get(generator.nextInt(moveBuffer.size()));
     }
     
     // returns a move appropriate for the selected difficulty
-    public String AIMove(){
+    public int AIMove(){
+        return AISearch(null).getMove();
+    }
+
+    /*
+     * Searches for a move appropriate for the selected difficulty, telling the
+     * given listener (if not null) about the progress of the search. A move
+     * found in the opening book is played at once, without a search.
+     */
+    public SearchResult AISearch(SearchListener listener){
+        if (AIType() != BEGINNER_AI && AIType() != NO_AI) {
+            int bookMove = bookMove(CheckersPiece.COMPUTER_PLAYER);
+            if (bookMove != CheckersMove.NONE) {
+                return new SearchResult(bookMove, evalGameState(this), 0, 0);
+            }
+        }
+
         switch(AIType()){
             case BEGINNER_AI:
-                return randomAIMove();
+                return new SearchResult(randomAIMove(), evalGameState(this), 0, 0);
             case EASY_AI:
-                return miniMax(this, EASY_AI);
+                return searchAIMove(EASY_AI, null, 0, listener);
             case MEDIUM_AI:
-                return miniMax(this, MEDIUM_AI);
+                return searchAIMove(MEDIUM_AI, null, 0, listener);
             case HARD_AI:
-                return miniMax(this, HARD_AI);
+                return searchAIMove(HARD_AI, null, 0, listener);
             default:
-                return "";
+                return new SearchResult(CheckersMove.NONE, 0, 0, 0);
         }
     }
-    
+
     /*
-     * A heuristic evaluation function that takes into account the number of
-     * pieces that each player has, the types of pieces and their positions on 
-     * the board (pieces on the edge are rated higher because they can't be
-     * beaten). 
-     * The higher the returned value, the better for the AI and worse
-     * for the human player. 
+     * Returns the move the AI expects the given player to make next, as found
+     * by its last search, or CheckersMove.NONE if it did not look at the
+     * current position.
      */
-    static double evalGameState(CheckersGame game){
-        double humanPieceValue = 0;
-        double compPieceValue = 0;
-        for(int i=0; i< BOARD_SIZE; i++){
-            if(!VALID_SQUARE[i])
-                continue;
-            if(game.getTypeAt(i) == Board.EMPTY_SQUARE)
-                continue;
-            double pieceValue = 0;
-            if(game.getTypeAt(i) == CheckersPiece.CHECKER)
-                pieceValue = 1;
-            else if(game.getTypeAt(i) == CheckersPiece.KING)
-                pieceValue = 1.4;
-            pieceValue *= POSITION_MULTIPLIER[i];
-            
-            if(game.getOwnerAt(i) == CheckersPiece.COMPUTER_PLAYER)
-                compPieceValue += pieceValue;
-            else if(game.getOwnerAt(i) == CheckersPiece.HUMAN_PLAYER)
-                humanPieceValue += pieceValue;
+    public int expectedMove(int player) {
+        int move = TranspositionTable.move(getTranspositionTable().probe(hashKey(player)));
+
+        if (move == CheckersMove.NONE) {
+            return CheckersMove.NONE;
         }
-        return (compPieceValue - humanPieceValue);
+
+        // make sure the stored move is valid here
+        generateMoves(player, moveBuffer);
+        return moveBuffer.find(CheckersMove.source(move), CheckersMove.dest(move));
     }
-    
+
     /*
-     * A MiniMax algorithm that finds the best move for the AI. It uses 
-     * alpha-beta pruning for optimisation. 
-     * Unrealistic values are used for both alpha and beta when calling maxMove 
-     * (-250 and 250) to force the function to replace them as soon as it can.
+     * Returns the best move the AI finds within the given time. The search
+     * looks further ahead for as long as the time allows, whatever the selected
+     * difficulty, except for the beginner AI which moves at random. A move
+     * found in the opening book is played at once, without a search.
      */
-    private String miniMax(CheckersGame game, int depth) {    
-        Move temp = maxMove(game, -250, 250, 0, depth, "");
-        return temp.move;
+    public int AIMove(Duration budget){
+        if(AIType() == BEGINNER_AI)
+            return randomAIMove();
+        if(AIType() == NO_AI)
+            return CheckersMove.NONE;
+        int bookMove = bookMove(CheckersPiece.COMPUTER_PLAYER);
+        if(bookMove != CheckersMove.NONE)
+            return bookMove;
+        return searchAIMove(CheckersSearch.MAX_DEPTH, budget, 0).getMove();
     }
-    
+
+    // returns a move for the given player from the opening book, or CheckersMove.NONE if it has none
+    private int bookMove(int player) {
+        OpeningBook book = getOpeningBook();
+
+        if (book == null) {
+            return CheckersMove.NONE;
+        }
+        return book.pick(this, player, ThreadLocalRandom.current());
+    }
+
     /*
-     * Searches and picks the best move for the AI. Tries to maximise the result
-     * of the evaluation function.
+     * Searches for the best move for the AI, looking up to maxDepth moves
+     * ahead. The search stops early once it has run for the given time (null
+     * for no limit) or searched nodeBudget positions (0 for no limit), and
+     * returns the result of the deepest search it completed.
      */
-    private Move maxMove(CheckersGame game, double alpha, double beta, int currentDepth, int depthLimit, String firstMove) {    
-        
-        // return and evaluate if reached game limit or game ended
-        if(game.winner(CheckersPiece.COMPUTER_PLAYER) != -1 || currentDepth >= depthLimit)
-            return new Move(firstMove, evalGameState(game));   
-        
-        // theoretical best move, -250 to be replaced at nearest opportunity
-        Move bestMove = new Move("", -250); 
-        
-        // process all possible computer moves
-        String moves = game.listAllMoves(CheckersPiece.COMPUTER_PLAYER);
-        String [] splitMoves = moves.split(" ");
-        
-        for(int i=0; i < splitMoves.length; i+=2){
-            CheckersGame temp = new CheckersGame(game);
-            int source = Integer.parseInt(splitMoves[i]);
-            int dest = Integer.parseInt(splitMoves[i+1]);
-            
-            String tempFirstMove = firstMove;
-            
-            // remember first move in the sequence
-            if(firstMove.equals(""))                
-                tempFirstMove = (source + " " + dest + " ");
-            
-            // try the move on a theoretical board
-            temp.movePiece(source, dest, CheckersPiece.COMPUTER_PLAYER);
-            
-            // carry out consecutive capturing moves, if any
-            if(temp.canAttackAgain()){
-                Move move = maxMove(temp, alpha, beta, currentDepth, depthLimit, tempFirstMove);
-            
-                // remember the best move, save best value into alpha
-                if(move.value > bestMove.value){
-                    bestMove = move;
-                    alpha = move.value;
-                }        
-            }
-            
-            /* 
-             * once no more conecutive capturing moves are available, continue by 
-             * inspecting opponent's moves.
-             */
-            else{
-                // get opponent's best move (worst for AI, best for player)
-                Move move = minMove(temp, alpha, beta, (currentDepth), depthLimit, tempFirstMove);
-            
-                // remember the best move, save best value into alpha
-                if(move.value > bestMove.value){
-                    bestMove = move;
-                    alpha = move.value;
-                }
-                
-                /* 
-                 * Carry out alpha-beta pruning.
-                 * If the opponent's recent best move is worse than his overall
-                 * best move (remember, the opponent is trying to minimise the
-                 * value!), then we can assume that it will not go down that path
-                 * and instead pick the overall best move - therefore there is
-                 * no need to search this path.
-                 */
-                if(beta != 250.0 && move.value > beta){
-                    return bestMove;
-                }
-            }
-        }
-        return bestMove;
+    public SearchResult searchAIMove(int maxDepth, Duration budget, long nodeBudget) {
+        return searchAIMove(maxDepth, budget, nodeBudget, null);
     }
-    
+
+    // as above, telling the given listener (if not null) about the progress
+    public SearchResult searchAIMove(int maxDepth, Duration budget, long nodeBudget, SearchListener listener) {
+        return searchMove(CheckersPiece.COMPUTER_PLAYER, maxDepth, budget, nodeBudget, listener);
+    }
+
     /*
-     * Searches and picks the worst move for the AI. Tries to minimise the result
-     * of the evaluation function.
-     */    
-    private Move minMove(CheckersGame game, double alpha, double beta, int currentDepth, int depthLimit, String firstMove) {
-        
-        // return and evaluate if reached game limit or game ended
-        if(game.winner(CheckersPiece.HUMAN_PLAYER) != -1 || currentDepth >= depthLimit)
-            return new Move(firstMove, evalGameState(game));
-    
-        // theoretical best move, -250 to be replaced at nearest opportunity
-        Move worstMove = new Move("", 250); 
-        
-        // process all possible human moves
-        String moves = game.listAllMoves(CheckersPiece.HUMAN_PLAYER);
-        String [] splitMoves = moves.split(" ");
-        
-        for(int i=0; i < splitMoves.length; i+=2){
-            CheckersGame temp = new CheckersGame(game);
-            int source = Integer.parseInt(splitMoves[i]);
-            int dest = Integer.parseInt(splitMoves[i+1]);
-            
-            // try the move on a theoretical board
-            temp.movePiece(source, dest, CheckersPiece.HUMAN_PLAYER);
-            
-            // carry out consecutive capturing moves, if any
-            if(temp.canAttackAgain()){
-                Move move = minMove(temp, alpha, beta, currentDepth, depthLimit, firstMove);
-            
-                // remember the worst move for the AI, save worst value into beta
-                if(move.value < worstMove.value){
-                    worstMove = move;
-                    beta = move.value;
-                }
-            }
-            
-            /* 
-             * once no more conecutive capturing moves are available, continue by 
-             * inspecting opponent's moves.
-             */
-            else{
-                // get opponent's best move (best for AI, worst for player)
-                Move move = maxMove(temp, alpha, beta, (currentDepth+1), depthLimit, firstMove);
-
-                // remember the worst move, save wosrt value into beta
-                if(move.value < worstMove.value){
-                    worstMove = move;
-                    beta = move.value;
-                }
-                
-                /* 
-                 * Carry out alpha-beta pruning.
-                 * If the opponent's recent best move is worse than his overall
-                 * best move (remember, the opponent is trying to maximise the
-                 * value!), then we can assume that it will not go down that path
-                 * and instead pick the overall best move - therefore there is
-                 * no need to search this path.
-                 */
-                if(alpha != -250.0 && move.value < alpha){
-                    return worstMove;
-                }
-            }
-        }        
-        return worstMove;
+     * Searches for the best move for the given player, as searchAIMove does
+     * for the computer. Scores are always given from the computer's point of
+     * view, so the best move for the human player has the lowest score.
+     */
+    public SearchResult searchMove(int player, int maxDepth, Duration budget, long nodeBudget, SearchListener listener) {
+        long budgetNanos = budget == null ? 0 : Math.max(1, budget.toNanos());
+        return new ParallelSearch(this, getSearchPool(), searchThreads, player, listener)
+                .search(maxDepth, budgetNanos, nodeBudget);
     }
     
     /*
-     * A class used by the minimax algorithm to store the move's evaluated value
-     * as well as the move itself.
+     * A heuristic evaluation function that takes into account the number of
+     * pieces that each player has, the types of pieces and their positions on 
+     * the board (pieces on the edge are rated higher because they can't be
+     * beaten). 
+     * The higher the returned value, the better for the AI and worse
+     * for the human player. The values used are those of the game's
+     * EvalWeights.
      */
-    public static class Move{
-        public String move;
-        public double value;
-        
-        Move(String argMoves, double argValue){
-            move = argMoves;
-            value = argValue;
-        }
+    static double evalGameState(CheckersGame game){
+        return game.evaluate() / (double) EvalWeights.SCALE;
     }
 
+    /*
+     * Returns the value of evalGameState in centipieces. The score is kept up
+     * to date as pieces move, are captured and are coronated, so this takes
+     * no time at all.
+     */
+    int evaluate() {
+        return score;
+    }
+
+    // returns the score of a piece of the given player, from the computer's point of view
+    private int pieceScore(int owner, int type, int square) {
+        int pieceScore = evalWeights.getPieceScore(type, square);
+        return owner == CheckersPiece.COMPUTER_PLAYER ? pieceScore : -pieceScore;
+    }
+
+    // adds up the scores of all pieces on the board
+    private int scorePieces() {
+        int total = 0;
+        for (int i = 0; i < BOARD_SIZE; i++) {
+            if (position.ownerAt(i) != Board.EMPTY_SQUARE) {
+                total += pieceScore(position.ownerAt(i), position.typeAt(i), i);
+            }
+        }
+        return total;
+    }
+    
     // returns type of piece at given location
     public int getTypeAt(int square) {
-        return checkersBoard.pieceTypeAt(square);
+        return position.typeAt(square);
     }
 
     // returns owner of piece at given location
     public int getOwnerAt(int square) {
-        return checkersBoard.pieceOwnerAt(square);
+        return position.ownerAt(square);
     }
 
     // changes the AI settings
@@ -677,22 +680,61 @@ public class CheckersGame {
 
     // add a piece to the board at given location
     public void addPieceAt(int square, CheckersPiece piece) {
-        checkersBoard.addPiece(square, piece);
+        if (position.addPiece(square, piece.getOwner(), piece.getType())) {
+            hashKey ^= Zobrist.piece(piece.getOwner(), piece.getType(), square);
+            score += pieceScore(piece.getOwner(), piece.getType(), square);
+        }
+    }
+
+    // returns the pieces on the board, which must not be changed
+    BitboardPosition getPosition() {
+        return position;
+    }
+
+    /*
+     * Replaces the pieces on the board with the given sets, the kings being
+     * among the others, and forgets the moves made so far, so that no capture
+     * is pending and no move can be taken back.
+     */
+    void setPieces(int humanPieces, int compPieces, int kings) {
+        position.set(humanPieces, compPieces, kings);
+        consecutiveAttack = NO_SQUARE;
+        noMadeMoves = 0;
+        hashKey = Zobrist.pieces(position);
+        score = scorePieces();
+    }
+
+    // makes the piece on the given square the one that has to capture again
+    void setConsecutiveSquare(int square) {
+        clearConsecutive();
+        consecutiveAttack = square;
+        hashKey ^= Zobrist.consecutiveAttack(square);
     }
 
     // return list of consecutive moves
     public String getConsecutiveCaptures() {
-        return consecutiveAttack;
+        if (consecutiveAttack == NO_SQUARE) {
+            return "";
+        }
+        return listCaptures(consecutiveAttack, position.ownerAt(consecutiveAttack));
     }
 
     // check if a player can capture again
     public boolean canAttackAgain() {
-        return consecutiveAttack.length() != 0;
+        return consecutiveAttack != NO_SQUARE;
+    }
+
+    // returns the square of the piece that has to capture again, or -1 if none
+    public int getConsecutiveSquare() {
+        return consecutiveAttack;
     }
 
     // clear the list of consecutive moves
     public void clearConsecutive() {
-        consecutiveAttack = "";
+        if (consecutiveAttack != NO_SQUARE) {
+            hashKey ^= Zobrist.consecutiveAttack(consecutiveAttack);
+        }
+        consecutiveAttack = NO_SQUARE;
     }
 
     // swap players' pieces and rotate the board
@@ -702,25 +744,13 @@ public class CheckersGame {
          * Refuse to swap pieces if the player can capture for the second time.
          * This is done to preserve the continuity of the game.
          */
-        if (consecutiveAttack.length() != 0) {
+        if (consecutiveAttack != NO_SQUARE) {
             return;
         }
         
-        // swap piece numbers
-        int temp = noHumanPieces;
-        noHumanPieces = noCompPieces;
-        noCompPieces = temp;
-
-        // rotate the board
-        checkersBoard.swapSquares();
-        
-        // swap piece owners
-        for (int i = 0; i < checkersBoard.size(); i++) {
-            if (VALID_SQUARE[i] && checkersBoard.pieceOwnerAt(i) >= 0) {
-                CheckersPiece tempP = (CheckersPiece) checkersBoard.removePiece(i);
-                tempP.changeOwner();
-                checkersBoard.addPiece(i, tempP);
-            }
-        }
+        // rotate the board and swap piece owners
+        position.swapPlayers();
+        hashKey = Zobrist.pieces(position);
+        score = scorePieces();
     }
 }
@@ -0,0 +1,76 @@
+/*
+ * Helper methods for moves that are encoded as a single int, so that lists of
+ * moves can be stored in a MoveList without creating any objects.
+ *
+ * A move is a single step or a single capture of one piece. Consecutive
+ * captures are played as separate moves by the same player. Squares are
+ * numbered as in CheckersGame. The bits of a move are used as follows:
+ *
+ * bits  0 -  5: source square
+ * bits  6 - 11: destination square
+ * bits 12 - 17: square of the captured piece
+ * bit       18: set if the move captures a piece
+ * bit       19: set if the moved piece gets coronated
+ *
+ * A single capture removes exactly one piece, so the square of that piece is
+ * stored instead of a mask of all captured squares.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+public final class CheckersMove {
+
+    // no valid move has the same source and destination square
+    public static final int NONE = 0;
+
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int DEST_SHIFT = 6;
+    private static final int CAPTURED_SHIFT = 12;
+    private static final int CAPTURE_FLAG = 1 << 18;
+    private static final int PROMOTION_FLAG = 1 << 19;
+
+    private CheckersMove() {
+    }
+
+    // returns a non-capturing move
+    public static int quiet(int source, int dest, boolean promotion) {
+        int move = source | (dest << DEST_SHIFT);
+        return promotion ? move | PROMOTION_FLAG : move;
+    }
+
+    // returns a capturing move. the captured piece lies between source and dest
+    public static int capture(int source, int dest, boolean promotion) {
+        int move = source | (dest << DEST_SHIFT)
+                | (((source + dest) / 2) << CAPTURED_SHIFT) | CAPTURE_FLAG;
+        return promotion ? move | PROMOTION_FLAG : move;
+    }
+
+    // returns the source square of the move
+    public static int source(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    // returns the destination square of the move
+    public static int dest(int move) {
+        return (move >>> DEST_SHIFT) & SQUARE_MASK;
+    }
+
+    // returns the square of the captured piece. only valid for captures
+    public static int captured(int move) {
+        return (move >>> CAPTURED_SHIFT) & SQUARE_MASK;
+    }
+
+    // checks if the move captures a piece
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE_FLAG) != 0;
+    }
+
+    // checks if the moved piece gets coronated
+    public static boolean isPromotion(int move) {
+        return (move & PROMOTION_FLAG) != 0;
+    }
+
+    // returns the move in the form: <source> + " " + <destination> + " "
+    public static String toString(int move) {
+        return source(move) + " " + dest(move) + " ";
+    }
+}
@@ -0,0 +1,726 @@
+/*
+ * A principal variation search that finds the best move for the AI. It is an
+ * alpha-beta search in negamax form: every score is given from the point of
+ * view of the player to move, so the same code searches the moves of both
+ * players. The first move of a position is searched with the full window.
+ * Every other move is first searched with a null window, which only proves
+ * that it is no better than the best move so far, and is searched again with
+ * the full window if that proof fails. With good move ordering, the proof
+ * rarely fails and costs far less than a full search.
+ *
+ * Each iteration starts with a narrow window around the score of the previous
+ * one (aspiration window), which is widened if the score falls outside it. The
+ * best line of play found (principal variation) is collected on the way back
+ * up the tree, one row for each distance from the root.
+ *
+ * The whole tree is searched on a single copy of the game: every move is
+ * carried out with makeMove and taken back with unmakeMove once its subtree
+ * has been searched. Each level of the tree has its own MoveList, so once the
+ * lists have reached their working size the search creates no objects.
+ *
+ * The results of all searched positions are kept in the transposition table of
+ * the game. A position that is reached again, through another order of moves
+ * or in a later search, is not searched again if the stored result is deep
+ * enough and its score settles the position. Otherwise the stored best move is
+ * tried first.
+ *
+ * The other moves are ordered so that a good one comes early, which lets
+ * alpha-beta pruning cut off more of the tree: captures and promotions first,
+ * then the two killer moves of the level, the last quiet moves to cause a
+ * cutoff at the same distance from the root, then the remaining moves by
+ * their history score, which grows each time a move causes a cutoff.
+ *
+ * The search is selective: moves that are unlikely to matter are searched
+ * less deeply than the others, or not at all. Quiet moves that come late in
+ * the move ordering are searched one ply less deeply (late move reductions),
+ * and searched again to the full depth if they turn out better than the best
+ * move so far. Near the depth limit, quiet moves are skipped if the position
+ * is so bad that they are not expected to catch up (futility pruning). Both
+ * are off unless turned on in the game: in self-play they have not yet been
+ * shown to make the AI stronger at the same depth or in the same time.
+ *
+ * The search deepens iteratively: it searches one move ahead, then two, and so
+ * on, until it reaches the depth limit or runs out of time or nodes. A search
+ * that runs out of its budget is abandoned, and the best move of the last
+ * completed search is played. Thanks to the transposition table, the earlier
+ * searches make the later ones faster, so the extra searches cost little.
+ *
+ * At the depth limit, the captures that are still available are played out
+ * before the position is evaluated (quiescence search). Captures are
+ * compulsory, so a position in which one is pending is far from settled, and
+ * its static evaluation would be misleading. The quiescence search follows
+ * capture moves only, until a position without captures is reached.
+ *
+ * Positions with few enough pieces are looked up in the endgame database of
+ * the game, if it has one, and not searched at all. A won position scores far
+ * above any evaluation, less the number of moves it takes to win, so that the
+ * quickest win is preferred and a loss is put off for as long as possible. A
+ * game that is over scores the same way, as a win in no more moves. These
+ * scores count the moves from the root, so they are stored in the
+ * transposition table counting from the position instead.
+ *
+ * A search may be one of several that run in parallel on the same position
+ * (see ParallelSearch). All of them share a stop flag, which is checked along
+ * with the clock, and end as soon as it is raised. A search also ends when
+ * its thread is interrupted, for example by cancelling the Future it runs in.
+ *
+ * A search may also be given a checkpoint, which it runs whenever it checks
+ * the clock. SearchScheduler uses it to let other searches have the processor
+ * in the middle of a long one; the time the checkpoint takes counts against
+ * the budget like any other.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class CheckersSearch {
+
+    // the deepest search that is ever started
+    static final int MAX_DEPTH = 64;
+
+    // the clock and the stop flag are checked, and the checkpoint run, every 1024 positions searched
+    private static final int CLOCK_CHECK_MASK = 1023;
+
+    // the order scores of the kinds of moves, above any history score
+    private static final int HASH_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 29;
+    private static final int PROMOTION_SCORE = 1 << 28;
+    private static final int KILLER_SCORE = 1 << 27;
+
+    // history scores are halved once one of them reaches this value
+    private static final int HISTORY_LIMIT = 1 << 20;
+
+    // a score beyond that of any position, in centipieces like all scores of the search
+    private static final int INFINITY = 1000000;
+
+    // returned by storedScore when the stored result does not settle the position
+    private static final int NO_SCORE = Integer.MIN_VALUE;
+
+    // the first aspiration window reaches this far on each side of the last score
+    private static final int ASPIRATION_WINDOW = 50;
+
+    // the score of a won game, or of a win in the endgame database, before the moves to the win are taken off
+    private static final int WIN_SCORE = 100000;
+
+    // scores beyond this, on either side, are wins or losses
+    private static final int WIN_BOUND = WIN_SCORE / 2;
+
+    // an aspiration window wider than this is opened completely
+    private static final int MAX_ASPIRATION_WINDOW = 800;
+
+    // the number of moves of a position searched before the later ones are reduced
+    private static final int FULL_DEPTH_MOVES = 3;
+
+    // late moves are only reduced this many plies or more before the depth limit
+    private static final int REDUCTION_DEPTH = 3;
+
+    // how far the score of a quiet move may be above the static score, one and two plies before the limit
+    private static final int[] FUTILITY_MARGIN = { 0, 100, 200 };
+
+    private final CheckersGame game;
+    private final TranspositionTable table;
+    private final Tablebase tablebase;
+    private final AtomicBoolean stop;
+
+    // lists of moves, indexed by the distance from the root of the tree
+    private MoveList[] moveLists = new MoveList[0];
+
+    // two killer moves for each distance from the root, and the order scores of a list
+    private int[] killers = new int[0];
+    private int[] orderScores = new int[64];
+
+    // the history scores of the moves of each player, indexed by source and destination
+    private final int[][] history = new int[2][CheckersGame.BOARD_SIZE * CheckersGame.BOARD_SIZE];
+
+    // the principal variation of each position on the current line, by distance from the root
+    private MoveList[] principalVariations = new MoveList[0];
+
+    // the budget of the search, and the number of positions searched so far
+    private long deadline, nodeLimit, nodes;
+    private boolean aborted;
+
+    // the number of those positions searched by the quiescence search
+    private long qnodes;
+
+    // the number of cutoffs, and of those caused by the first move searched
+    private long cutoffs, firstMoveCutoffs;
+
+    // told about the result of every completed iteration, if not null
+    private SearchListener listener;
+
+    // run every time the clock is checked, if not null
+    private Runnable checkpoint;
+
+    // the player to find a move for
+    private int player = CheckersPiece.COMPUTER_PLAYER;
+
+    // the search works on its own copy of the given game
+    CheckersSearch(CheckersGame game) {
+        this(game, new AtomicBoolean());
+    }
+
+    // create a search that also ends once the given flag is raised
+    CheckersSearch(CheckersGame game, AtomicBoolean stop) {
+        this.game = new CheckersGame(game);
+        this.table = game.getTranspositionTable();
+        this.tablebase = game.getTablebase();
+        this.stop = stop;
+    }
+
+    // changes the listener told about the progress of the search
+    void setListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    // changes the checkpoint run every time the clock is checked, on the thread of the search
+    void setCheckpoint(Runnable checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /*
+     * Changes the player to find a move for. The scores of the result stay
+     * those of the evaluation function, so the human player looks for the
+     * lowest score.
+     */
+    void setPlayer(int player) {
+        this.player = player;
+    }
+
+    /*
+     * Searches for the best move for the AI, looking up to maxDepth moves
+     * ahead. The search stops early once it has run for budgetNanos or
+     * searched nodeBudget positions. A budget of 0 means no limit.
+     */
+    SearchResult search(int maxDepth, long budgetNanos, long nodeBudget) {
+        table.newSearch();
+        return iterate(1, maxDepth, budgetNanos, nodeBudget);
+    }
+
+    /*
+     * Deepens the search from startDepth up to maxDepth, within the given
+     * budget. Unlike search, it does not start a new search in the
+     * transposition table, so that parallel searches can share its entries.
+     */
+    SearchResult iterate(int startDepth, int maxDepth, long budgetNanos, long nodeBudget) {
+        deadline = budgetNanos > 0 ? System.nanoTime() + budgetNanos : Long.MAX_VALUE;
+        nodeLimit = nodeBudget > 0 ? nodeBudget : Long.MAX_VALUE;
+        nodes = 0;
+        qnodes = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        aborted = false;
+
+        int[] bestLine = new int[0];
+        int bestScore = 0;
+        int completedDepth = 0;
+
+        for (int depth = startDepth; depth <= Math.min(maxDepth, MAX_DEPTH); depth++) {
+            int score = searchRoot(depth, bestScore, completedDepth > 0);
+
+            if (aborted) {
+                break;
+            }
+            bestLine = principalVariation(0);
+            bestScore = score;
+            completedDepth = depth;
+
+            if (listener != null) {
+                listener.searchProgress(result(bestLine, bestScore, completedDepth));
+            }
+        }
+
+        if (completedDepth == 0) {
+            int move = fallbackMove();
+            bestLine = move == CheckersMove.NONE ? new int[0] : new int[] { move };
+            bestScore = evaluate(player);
+        }
+        return result(bestLine, bestScore, completedDepth);
+    }
+
+    /*
+     * Searches the root to the given depth, within an aspiration window around
+     * the score of the previous iteration if there was one. The window is
+     * widened on the side the score falls out of until the score lies within.
+     */
+    private int searchRoot(int depth, int lastScore, boolean aspire) {
+        int window = ASPIRATION_WINDOW;
+        int alpha = aspire ? lastScore - window : -INFINITY;
+        int beta = aspire ? lastScore + window : INFINITY;
+
+        while (true) {
+            int score = search(alpha, beta, 0, plies(depth), player);
+
+            if (aborted) {
+                return 0;
+            }
+            if (score <= alpha) {
+                alpha = window >= MAX_ASPIRATION_WINDOW ? -INFINITY : score - window;
+            } else if (score >= beta) {
+                beta = window >= MAX_ASPIRATION_WINDOW ? INFINITY : score + window;
+            } else {
+                return score;
+            }
+            window *= 2;
+        }
+    }
+
+    /*
+     * Returns the number of plies in a search of the given depth: a move of
+     * each player per level of depth, so that the search ends with the
+     * computer to move.
+     */
+    private int plies(int depth) {
+        return player == CheckersPiece.COMPUTER_PLAYER ? depth * 2 : depth * 2 - 1;
+    }
+
+    // returns the result of the search, with the score from the computer's point of view
+    private SearchResult result(int[] line, int score, int depth) {
+        int move = line.length > 0 ? line[0] : CheckersMove.NONE;
+        int computerScore = player == CheckersPiece.COMPUTER_PLAYER ? score : -score;
+
+        return new SearchResult(move, computerScore / (double) EvalWeights.SCALE, depth, line,
+                nodes, qnodes, cutoffs, firstMoveCutoffs);
+    }
+
+    /*
+     * Returns the move to play when not even the shallowest search completed:
+     * the move stored in the transposition table, or else the first valid move.
+     */
+    private int fallbackMove() {
+        MoveList moves = movesAt(0);
+        game.generateMoves(player, moves);
+
+        if (moves.isEmpty()) {
+            return CheckersMove.NONE;
+        }
+        moves.moveToFront(TranspositionTable.move(table.probe(game.hashKey(player))));
+        return moves.get(0);
+    }
+
+    // counts the position, returns true if the search has run out of its budget
+    private boolean outOfBudget() {
+        nodes++;
+
+        if (nodes >= nodeLimit) {
+            aborted = true;
+        } else if ((nodes & CLOCK_CHECK_MASK) == 0) {
+            if (checkpoint != null) {
+                checkpoint.run();
+            }
+            if (stop.get() || Thread.currentThread().isInterrupted() || System.nanoTime() >= deadline) {
+                aborted = true;
+            }
+        }
+        return aborted;
+    }
+
+    // returns the move list for the given level of the tree
+    private MoveList movesAt(int ply) {
+        if (ply == moveLists.length) {
+            MoveList[] temp = new MoveList[ply * 2 + 8];
+            System.arraycopy(moveLists, 0, temp, 0, ply);
+            moveLists = temp;
+        }
+        if (moveLists[ply] == null) {
+            moveLists[ply] = new MoveList();
+        }
+        return moveLists[ply];
+    }
+
+    // returns the principal variation row for the given level of the tree
+    private MoveList principalVariationAt(int ply) {
+        if (ply >= principalVariations.length) {
+            principalVariations = Arrays.copyOf(principalVariations, ply * 2 + 8);
+        }
+        if (principalVariations[ply] == null) {
+            principalVariations[ply] = new MoveList();
+        }
+        return principalVariations[ply];
+    }
+
+    // returns the principal variation of the position at the given level
+    private int[] principalVariation(int ply) {
+        MoveList line = principalVariationAt(ply);
+        int[] moves = new int[line.size()];
+
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = line.get(i);
+        }
+        return moves;
+    }
+
+    // makes the move followed by the principal variation of the next level that of this level
+    private void updatePrincipalVariation(int ply, int move) {
+        MoveList line = principalVariationAt(ply);
+        MoveList rest = principalVariationAt(ply + 1);
+
+        line.clear();
+        line.add(move);
+        for (int i = 0; i < rest.size(); i++) {
+            line.add(rest.get(i));
+        }
+    }
+
+    // returns the score of the position from the point of view of the given player
+    private int evaluate(int side) {
+        int score = game.evaluate();
+        return side == CheckersPiece.COMPUTER_PLAYER ? score : -score;
+    }
+
+    /*
+     * Sorts the moves of the given player, best first: the stored best move,
+     * captures and promotions, the killer moves of the level, and the other
+     * moves by their history scores. Moves of equal score keep their order.
+     */
+    private void orderMoves(MoveList moves, int ply, int hashMove, int mover) {
+        int size = moves.size();
+
+        if (orderScores.length < size) {
+            orderScores = new int[size * 2];
+        }
+        if (killers.length < ply * 2 + 2) {
+            killers = Arrays.copyOf(killers, ply * 4 + 16);
+        }
+
+        for (int i = 0; i < size; i++) {
+            int move = moves.get(i);
+            int score;
+
+            if (move == hashMove) {
+                score = HASH_MOVE_SCORE;
+            } else if (CheckersMove.isCapture(move)) {
+                score = CAPTURE_SCORE + (CheckersMove.isPromotion(move) ? PROMOTION_SCORE : 0);
+            } else if (CheckersMove.isPromotion(move)) {
+                score = PROMOTION_SCORE;
+            } else if (move == killers[ply * 2]) {
+                score = KILLER_SCORE + 1;
+            } else if (move == killers[ply * 2 + 1]) {
+                score = KILLER_SCORE;
+            } else {
+                score = history[mover][CheckersMove.source(move) * CheckersGame.BOARD_SIZE
+                        + CheckersMove.dest(move)];
+            }
+
+            // insert the move into the sorted part of the list
+            int j = i;
+            while (j > 0 && orderScores[j - 1] < score) {
+                orderScores[j] = orderScores[j - 1];
+                moves.set(j, moves.get(j - 1));
+                j--;
+            }
+            orderScores[j] = score;
+            moves.set(j, move);
+        }
+    }
+
+    // remembers that the move caused a cutoff, as the i-th move searched
+    private void recordCutoff(int move, int i, int ply, int depth, int mover) {
+        cutoffs++;
+        if (i == 0) {
+            firstMoveCutoffs++;
+        }
+
+        // captures are tried early anyway
+        if (CheckersMove.isCapture(move)) {
+            return;
+        }
+        if (killers[ply * 2] != move) {
+            killers[ply * 2 + 1] = killers[ply * 2];
+            killers[ply * 2] = move;
+        }
+
+        int[] scores = history[mover];
+        int index = CheckersMove.source(move) * CheckersGame.BOARD_SIZE + CheckersMove.dest(move);
+
+        scores[index] += depth * depth;
+        if (scores[index] >= HISTORY_LIMIT) {
+            for (int j = 0; j < scores.length; j++) {
+                scores[j] /= 2;
+            }
+        }
+    }
+
+    /*
+     * Returns the score stored in the transposition table if it is deep enough
+     * to decide the value of the position within the given bounds, or NO_SCORE.
+     * Positions searched with an open window, the root among them, are always
+     * searched, so that their best line of play is known.
+     */
+    private int storedScore(long entry, int alpha, int beta, int ply, int depth) {
+        if (entry == TranspositionTable.NOT_FOUND || beta - alpha > 1
+                || TranspositionTable.depth(entry) < depth) {
+            return NO_SCORE;
+        }
+
+        int score = fromStoredScore(TranspositionTable.score(entry), ply);
+
+        switch (TranspositionTable.bound(entry)) {
+            case TranspositionTable.EXACT:
+                return score;
+            case TranspositionTable.LOWER_BOUND:
+                return score >= beta ? score : NO_SCORE;
+            case TranspositionTable.UPPER_BOUND:
+                return score <= alpha ? score : NO_SCORE;
+            default:
+                return NO_SCORE;
+        }
+    }
+
+    // stores the result of a search, given the bounds it was searched with
+    private void storeScore(long key, int score, int alpha, int beta, int ply, int depth, int move) {
+        int bound = TranspositionTable.EXACT;
+
+        if (score <= alpha) {
+            bound = TranspositionTable.UPPER_BOUND;
+        } else if (score >= beta) {
+            bound = TranspositionTable.LOWER_BOUND;
+        }
+        table.store(key, depth, bound, toStoredScore(score, ply), move);
+    }
+
+    /*
+     * Returns the score to store for a position at the given distance from
+     * the root. Wins and losses count the plies from the root, so they are
+     * stored counting from the position instead, as the table is shared by
+     * searches from other roots and reached at other distances.
+     */
+    private static int toStoredScore(int score, int ply) {
+        if (score > WIN_BOUND) {
+            return score + ply;
+        }
+        if (score < -WIN_BOUND) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    // returns the score of a position at the given distance from the root, from the stored score
+    private static int fromStoredScore(int score, int ply) {
+        if (score > WIN_BOUND) {
+            return score - ply;
+        }
+        if (score < -WIN_BOUND) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /*
+     * Searches the position with the given player to move and returns its
+     * score from that player's point of view. The depth is the number of
+     * plies still to look ahead; it goes down each time the turn passes to the
+     * other player, but not between the jumps of a multiple capture. The
+     * score is exact if it lies between alpha and beta, otherwise it is only
+     * a bound on the exact score.
+     */
+    private int search(int alpha, int beta, int ply, int depth, int side) {
+
+        // give up once the budget is spent, the result will not be used
+        if (outOfBudget())
+            return 0;
+        principalVariationAt(ply).clear();
+
+        // return if the game ended
+        int winner = game.winner(side);
+        if (winner != -1)
+            return endScore(winner, side, ply);
+
+        // look the position up in the endgame database, below the root
+        if (tablebase != null && ply > 0) {
+            int value = tablebase.probeValue(game, side);
+            if (value != Tablebase.UNKNOWN)
+                return tablebaseScore(value, ply);
+        }
+
+        // settle the pending captures once the depth limit is reached
+        if (depth <= 0)
+            return quiesce(alpha, beta, ply, side);
+
+        // look the position up in the transposition table
+        long key = game.hashKey(side);
+        long entry = table.probe(key);
+        int storedValue = storedScore(entry, alpha, beta, ply, depth);
+
+        if (storedValue != NO_SCORE)
+            return storedValue;
+
+        int bestValue = -INFINITY;
+        int bestMove = CheckersMove.NONE;
+        int originalAlpha = alpha;
+
+        // process all possible moves, best first
+        MoveList moves = movesAt(ply);
+        game.generateMoves(side, moves);
+        orderMoves(moves, ply, TranspositionTable.move(entry), side);
+
+        // near the depth limit, quiet moves cannot make up for a score far below alpha
+        boolean quiet = !moves.isEmpty() && !CheckersMove.isCapture(moves.get(0));
+        int futileValue = INFINITY;
+
+        if (game.isFutilityPruning() && quiet && depth < FUTILITY_MARGIN.length && beta - alpha == 1) {
+            futileValue = evaluate(side) + FUTILITY_MARGIN[depth];
+        }
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int value;
+
+            // skip the futile moves, once one move has been searched
+            if (i > 0 && futileValue <= alpha && !CheckersMove.isPromotion(move)) {
+                bestValue = Math.max(bestValue, futileValue);
+                continue;
+            }
+
+            // try the move on the board
+            game.makeMove(move);
+
+            /*
+             * Every move but the first is only proved no better than the best
+             * move so far, with a null window, and searched again with the
+             * full window if the proof fails. A late quiet move is searched
+             * less deeply, and to the full depth if it beats the best move.
+             */
+            if (i == 0) {
+                value = searchReply(alpha, beta, ply, depth, side);
+            } else {
+                int reduction = reduction(move, i, ply, depth, quiet);
+                value = searchReply(alpha, alpha + 1, ply, depth - reduction, side);
+
+                if (!aborted && reduction > 0 && value > alpha)
+                    value = searchReply(alpha, alpha + 1, ply, depth, side);
+
+                if (!aborted && value > alpha && value < beta)
+                    value = searchReply(alpha, beta, ply, depth, side);
+            }
+
+            game.unmakeMove();
+
+            if (aborted)
+                return 0;
+
+            // remember the best move, and the line of play that follows it
+            if (value > bestValue) {
+                bestValue = value;
+                bestMove = move;
+
+                if (value > alpha) {
+                    alpha = value;
+                    updatePrincipalVariation(ply, move);
+                }
+            }
+
+            // the opponent will not allow this position, no need to search further
+            if (alpha >= beta) {
+                recordCutoff(move, i, ply, depth, side);
+                break;
+            }
+        }
+        storeScore(key, bestValue, originalAlpha, beta, ply, depth, bestMove);
+        return bestValue;
+    }
+
+    // returns the score of a game won by the given player, from the point of view of the player to move
+    private static int endScore(int winner, int side, int ply) {
+        return winner == side ? WIN_SCORE - ply : ply - WIN_SCORE;
+    }
+
+    /*
+     * Returns the score of a position with the given value in the endgame
+     * database, from the point of view of the player to move. Wins and losses
+     * count the plies from the root and the moves to the end of the game.
+     */
+    private int tablebaseScore(int value, int ply) {
+        int toEnd = ply + Tablebase.distance(value);
+
+        switch (Tablebase.result(value)) {
+            case Tablebase.WIN:
+                return WIN_SCORE - toEnd;
+            case Tablebase.LOSS:
+                return toEnd - WIN_SCORE;
+            default:
+                return 0;
+        }
+    }
+
+    /*
+     * Searches the position after a move of the given player, and returns its
+     * score from that player's point of view, within the given bounds.
+     */
+    private int searchReply(int alpha, int beta, int ply, int depth, int side) {
+
+        // carry out consecutive capturing moves, by the same player
+        if (game.canAttackAgain())
+            return search(alpha, beta, ply + 1, depth, side);
+
+        // then continue by inspecting the opponent's moves
+        return -search(-beta, -alpha, ply + 1, depth - 1, (side + 1) % 2);
+    }
+
+    /*
+     * Returns the number of plies by which to reduce the search of the i-th
+     * move of a position: one for a quiet move that is neither a promotion
+     * nor a killer, far enough from the depth limit, 0 for any other move.
+     */
+    private int reduction(int move, int i, int ply, int depth, boolean quiet) {
+        if (!game.isLateMoveReductions() || !quiet || i < FULL_DEPTH_MOVES || depth < REDUCTION_DEPTH
+                || CheckersMove.isPromotion(move) || game.canAttackAgain()) {
+            return 0;
+        }
+        if (move == killers[ply * 2] || move == killers[ply * 2 + 1]) {
+            return 0;
+        }
+        return 1;
+    }
+
+    /*
+     * Plays out the captures available to the given player and returns the
+     * score of the position once no capture is left, from that player's point
+     * of view. There is no standing pat: a player who can capture has to, so
+     * the score is that of the best capture.
+     */
+    private int quiesce(int alpha, int beta, int ply, int side) {
+
+        // give up once the budget is spent, the result will not be used
+        if (outOfBudget())
+            return 0;
+        qnodes++;
+
+        int winner = game.winner(side);
+        if (winner != -1)
+            return endScore(winner, side, ply);
+
+        // a quiet position is evaluated as it is
+        MoveList captures = movesAt(ply);
+        if (game.generateCaptures(side, captures) == 0)
+            return evaluate(side);
+
+        int bestValue = -INFINITY;
+
+        for (int i = 0; i < captures.size(); i++) {
+            int value;
+
+            game.makeMove(captures.get(i));
+
+            // the same player goes on capturing with the same piece, if it can
+            if (game.canAttackAgain()) {
+                value = quiesce(alpha, beta, ply + 1, side);
+            } else {
+                value = -quiesce(-beta, -alpha, ply + 1, (side + 1) % 2);
+            }
+
+            game.unmakeMove();
+
+            if (aborted)
+                return 0;
+
+            bestValue = Math.max(bestValue, value);
+            alpha = Math.max(alpha, value);
+
+            // the other player will not allow this line
+            if (alpha >= beta)
+                break;
+        }
+        return bestValue;
+    }
+}
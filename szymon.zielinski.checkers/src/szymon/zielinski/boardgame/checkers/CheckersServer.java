@@ -0,0 +1,418 @@
+/*
+ * Hosts games of checkers for many clients at once over TCP, without the GUI.
+ *
+ * Each connection is a session with a game of its own. The client sends one
+ * command per line and the server answers each with one line, starting with
+ * OK or, if the command failed, ERR followed by the reason. Positions are
+ * given in the notation of PositionCodec and moves in that of PdnGame, so the
+ * human player is White and moves first.
+ *
+ * NEW [LEVEL]    start a new game with an AI of the given level: beginner,
+ *                easy, medium or hard (default: the level of the server)
+ * MOVE M         make the move M, such as 22-18 or 22x15x6, for the player
+ *                to move
+ * AI             let the AI make a move for the player to move
+ * UNDO           take back the last move
+ * STATE          show the game
+ * STATS          show the load of the AI
+ * QUIT           end the session
+ *
+ * NEW, MOVE, UNDO and STATE answer OK with the position and the result of
+ * the game, "*" while it is still going on. AI answers OK with the move it
+ * made, followed by the position and the result. STATS answers OK with the
+ * counters and wait times of the SearchScheduler.
+ *
+ * The AI plays whichever side is to move when asked, so a client plays
+ * against it by sending AI after each of its moves, and two people play at
+ * one client by sending only moves.
+ *
+ * Every connection is served by a thread of its own, a virtual thread where
+ * the Java runtime has them, so that waiting for slow clients costs little.
+ * The AI searches run in a SearchScheduler, one at a time per core by
+ * default, so that a burst of searches cannot starve the connections. The
+ * scheduler has four threads per search it runs at once, to hold the
+ * searches it pauses, and each of them keeps one transposition table,
+ * shared by all sessions. The memory given by -hash for each search run at
+ * once is split between its four threads, so the tables take up aiThreads
+ * times that in all: 16 MB per core by default. Searches for easier levels
+ * come first and take the processor from the harder ones in the middle of
+ * their search, so that a hard AI does not hold up the quick replies of an
+ * easy one. Every search must answer within the deadline, and searches less
+ * deeply if it started late. When more searches are waiting than the
+ * scheduler can queue, or one cannot start before its deadline, AI answers
+ * ERR busy.
+ *
+ * Usage: java szymon.zielinski.boardgame.checkers.CheckersServer [options]
+ *
+ * -port N        the port to listen on (default: 4680)
+ * -aithreads N   the number of AI searches run at once (default: one per core)
+ * -queue N       the number of AI searches that may wait (default: 256)
+ * -deadline MS   the time an AI search may take from the request
+ *                (default: 5000)
+ * -slice MS      the time an AI search runs before an equal one may
+ *                (default: 5)
+ * -level E       the AI level of new games, as in Tournament (default: medium)
+ * -hash MB       the size of the transposition tables of each AI search run
+ *                at once, split between the four threads that hold it
+ *                (default: 16)
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CheckersServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 4680;
+
+    // the longest command a client may send
+    static final int MAX_LINE_LENGTH = 256;
+
+    // the number of threads of the scheduler per search run at once, to hold the searches it pauses
+    private static final int THREADS_PER_SEARCH = 4;
+
+    // the levels a client may choose
+    private static final List<String> LEVELS = Arrays.asList("beginner", "easy", "medium", "hard");
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final SearchScheduler scheduler;
+    private final Duration deadline;
+    private final Tournament.Engine defaultLevel;
+
+    // the size of the transposition table of each AI thread
+    private final int hashSizeInMb;
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    // the transposition table of each AI thread
+    private final ThreadLocal<TranspositionTable> tables = new ThreadLocal<TranspositionTable>();
+
+    /*
+     * Create a server listening on the given port, 0 for any free one, which
+     * runs up to aiThreads searches at once, with up to queueSize more
+     * waiting, each of which must answer within the given deadline. The
+     * transposition tables take up aiThreads times hashSizeInMb in all.
+     */
+    public CheckersServer(int port, int aiThreads, int queueSize, Duration deadline, Duration slice,
+            Tournament.Engine defaultLevel, int hashSizeInMb) throws IOException {
+        this.serverSocket = new ServerSocket(port);
+        this.connections = newConnectionExecutor();
+        this.scheduler = new SearchScheduler(aiThreads, aiThreads * THREADS_PER_SEARCH, queueSize, slice);
+        this.deadline = deadline;
+        this.defaultLevel = defaultLevel;
+        this.hashSizeInMb = Math.max(1, hashSizeInMb / THREADS_PER_SEARCH);
+    }
+
+    // returns the port the server listens on
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // returns the number of sessions open
+    public int getSessions() {
+        return sessions.get();
+    }
+
+    // returns the scheduler the AI searches run in
+    public SearchScheduler getScheduler() {
+        return scheduler;
+    }
+
+    // accepts connections until the server is closed, serving each on a thread of its own
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+
+            try {
+                connections.execute(() -> serve(socket));
+            } catch (RejectedExecutionException e) {
+                socket.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+        scheduler.close();
+    }
+
+    // runs the session of a connection until the client quits or goes away
+    private void serve(Socket socket) {
+        sessions.incrementAndGet();
+        try (Socket s = socket;
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(),
+                        StandardCharsets.ISO_8859_1));
+                Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(),
+                        StandardCharsets.ISO_8859_1))) {
+            s.setTcpNoDelay(true);
+            Session session = new Session();
+            String line;
+
+            while ((line = readLine(in)) != null) {
+                String answer = session.execute(line.trim());
+                out.write(answer);
+                out.write('\n');
+                out.flush();
+
+                if (answer.equals(Session.BYE)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // the client went away
+        } finally {
+            sessions.decrementAndGet();
+        }
+    }
+
+    // reads a line of up to MAX_LINE_LENGTH characters, the rest being dropped, or returns null at the end
+    private static String readLine(BufferedReader in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (line.length() < MAX_LINE_LENGTH && c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return c == -1 && line.length() == 0 ? null : line.toString();
+    }
+
+    /*
+     * Returns an executor that runs every task on a virtual thread of its own
+     * on runtimes that have them, and on a cached pool of daemon threads on
+     * older ones.
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "Checkers session");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // returns the transposition table of the current AI thread
+    private TranspositionTable table() {
+        TranspositionTable table = tables.get();
+
+        if (table == null) {
+            table = new TranspositionTable(hashSizeInMb);
+            tables.set(table);
+        }
+        return table;
+    }
+
+    // the game of a connection and the states it went through, to take moves back
+    private class Session {
+
+        static final String BYE = "OK bye";
+
+        private CheckersGame game;
+        private int player;
+        private Tournament.Engine level;
+        private final Deque<long[]> history = new ArrayDeque<long[]>();
+        private final Random random = new Random();
+
+        Session() {
+            newGame(defaultLevel);
+        }
+
+        // carries out a command and returns the answer
+        String execute(String line) {
+            String[] words = line.split("\\s+", 2);
+            String argument = words.length > 1 ? words[1].trim() : "";
+
+            try {
+                switch (words[0].toUpperCase(Locale.ROOT)) {
+                    case "NEW":
+                        if (!argument.isEmpty() && !LEVELS.contains(argument.toLowerCase(Locale.ROOT))) {
+                            return "ERR unknown level: " + argument;
+                        }
+                        newGame(argument.isEmpty() ? defaultLevel : Tournament.Engine.parse(argument));
+                        return state();
+                    case "MOVE":
+                        move(argument);
+                        return state();
+                    case "AI":
+                        return aiMove();
+                    case "UNDO":
+                        if (history.isEmpty()) {
+                            return "ERR no move to take back";
+                        }
+                        long[] previous = history.pop();
+                        game = PositionCodec.decode(previous, 0);
+                        player = PositionCodec.player(previous, 0);
+                        return state();
+                    case "STATE":
+                        return state();
+                    case "STATS":
+                        return "OK " + scheduler.getStatistics();
+                    case "QUIT":
+                        return BYE;
+                    default:
+                        return "ERR unknown command: " + words[0];
+                }
+            } catch (IllegalArgumentException | IOException e) {
+                return "ERR " + e.getMessage();
+            }
+        }
+
+        private void newGame(Tournament.Engine engine) {
+            game = new CheckersGame();
+            game.setAI(CheckersGame.NO_AI);
+            player = CheckersPiece.HUMAN_PLAYER;
+            level = engine;
+            history.clear();
+        }
+
+        // makes the given move of the notation for the player to move
+        private void move(String text) {
+            if (game.winner(player) != -1) {
+                throw new IllegalArgumentException("the game is over");
+            }
+
+            long[] words = PositionCodec.encode(game, player);
+            PdnGame move = new PdnGame(words);
+            if (!move.addMove(text)) {
+                throw new IllegalArgumentException("not a move: " + text);
+            }
+
+            int[] hops = move.getHops();
+            for (int hop : hops) {
+                game.makeMove(hop);
+            }
+            history.push(words);
+            player = (player + 1) % 2;
+        }
+
+        /*
+         * Lets the AI make all hops of a move for the player to move, in the
+         * scheduler, and returns the move made with the state after it. The
+         * easier the level, the higher the priority of the search.
+         */
+        private String aiMove() {
+            if (game.winner(player) != -1) {
+                return "ERR the game is over";
+            }
+
+            long[] words = PositionCodec.encode(game, player);
+            CheckersGame searched = new CheckersGame(game);
+            Future<int[]> search;
+            try {
+                search = scheduler.submit(-level.getDepth(), level.getDepth(), deadline, (maxDepth, end, checkpoint) -> {
+                    int[] hops = new int[0];
+                    searched.setTranspositionTable(table());
+                    searched.setSearchCheckpoint(checkpoint);
+                    do {
+                        int hop = level.move(searched, player, random, maxDepth, end);
+                        searched.makeMove(hop);
+                        hops = Arrays.copyOf(hops, hops.length + 1);
+                        hops[hops.length - 1] = hop;
+                    } while (searched.canAttackAgain());
+                    searched.setSearchCheckpoint(null);
+                    return hops;
+                });
+            } catch (RejectedExecutionException e) {
+                return "ERR busy";
+            }
+
+            int[] hops;
+            try {
+                hops = search.get();
+            } catch (InterruptedException e) {
+                search.cancel(true);
+                Thread.currentThread().interrupt();
+                return "ERR interrupted";
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RejectedExecutionException) {
+                    return "ERR busy";
+                }
+                return "ERR " + e.getCause();
+            }
+
+            game = searched;
+            history.push(words);
+            player = (player + 1) % 2;
+            return "OK " + PdnWriter.move(hops, 0, hops.length) + " " + state().substring(3);
+        }
+
+        // returns the position and the result of the game
+        private String state() {
+            int winner = game.winner(player);
+            String result = winner == CheckersPiece.HUMAN_PLAYER ? PdnGame.WHITE_WINS
+                    : winner == CheckersPiece.COMPUTER_PLAYER ? PdnGame.BLACK_WINS : PdnGame.UNKNOWN;
+            return "OK " + PositionCodec.format(game, player) + " " + result;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT, aiThreads = Runtime.getRuntime().availableProcessors(), queue = 256, hash = 16;
+        Duration deadline = Duration.ofMillis(5000);
+        Duration slice = SearchScheduler.DEFAULT_SLICE;
+        Tournament.Engine level = Tournament.Engine.parse("medium");
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+
+            if (args[i].equals("-port")) {
+                port = Integer.parseInt(value);
+            } else if (args[i].equals("-aithreads")) {
+                aiThreads = Integer.parseInt(value);
+            } else if (args[i].equals("-queue")) {
+                queue = Integer.parseInt(value);
+            } else if (args[i].equals("-deadline")) {
+                deadline = Duration.ofMillis(Long.parseLong(value));
+            } else if (args[i].equals("-slice")) {
+                slice = Duration.ofMillis(Long.parseLong(value));
+            } else if (args[i].equals("-level")) {
+                level = Tournament.Engine.parse(value);
+            } else if (args[i].equals("-hash")) {
+                hash = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        try (CheckersServer server = new CheckersServer(port, Math.max(1, aiThreads), queue, deadline, slice, level,
+                hash)) {
+            System.out.println("listening on port " + server.getPort() + ", " + aiThreads + " AI threads, level "
+                    + level);
+            server.serve();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * The weights used by the evaluation function of CheckersGame: the values of a
+ * checker and of a king, and the multiplier of a piece's value on each square
+ * of the board. The default weights are the ones the AI has always played
+ * with. Weights are immutable, so they can be shared between games and
+ * threads.
+ *
+ * The evaluation counts in centipieces, hundredths of the value of a checker
+ * of weight 1, so that it can work with integers. The weights are turned into
+ * a table of the integer score of each type of piece on each square.
+ *
+ * Weights can be read from and written to a text file, so that they can be
+ * tuned without changing the code:
+ *
+ * # comments and empty lines are ignored
+ * checker 1
+ * king 1.4
+ * 0 1.2 0 1.2 0 1.2 0 1.2
+ * ... seven more rows of position multipliers, from the top of the board
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public final class EvalWeights {
+
+    public static final EvalWeights DEFAULT = new EvalWeights(1, 1.4, CheckersGame.POSITION_MULTIPLIER);
+
+    // the number of centipieces in a piece of value 1
+    public static final int SCALE = 100;
+
+    private static final String ERROR_MESSAGE = "Illegal number of position multipliers. Expected: "
+            + CheckersGame.BOARD_SIZE + " Found: ";
+
+    private final double checkerValue;
+    private final double kingValue;
+    private final double[] positionMultiplier;
+
+    // the scores of a checker and of a king on each square, in centipieces
+    private final int[] checkerScores = new int[CheckersGame.BOARD_SIZE];
+    private final int[] kingScores = new int[CheckersGame.BOARD_SIZE];
+
+    // create weights with the given piece values and position multipliers
+    public EvalWeights(double checkerValue, double kingValue, double[] positionMultiplier) {
+        if (positionMultiplier.length != CheckersGame.BOARD_SIZE) {
+            throw new IllegalArgumentException(ERROR_MESSAGE + positionMultiplier.length);
+        }
+        this.checkerValue = checkerValue;
+        this.kingValue = kingValue;
+        this.positionMultiplier = positionMultiplier.clone();
+
+        for (int i = 0; i < CheckersGame.BOARD_SIZE; i++) {
+            checkerScores[i] = (int) Math.round(checkerValue * positionMultiplier[i] * SCALE);
+            kingScores[i] = (int) Math.round(kingValue * positionMultiplier[i] * SCALE);
+        }
+    }
+
+    /*
+     * Reads weights from the given file, in the format described above. Throws
+     * IllegalArgumentException if the file is not in that format.
+     */
+    public static EvalWeights load(Path file) throws IOException {
+        double checkerValue = Double.NaN, kingValue = Double.NaN;
+        double[] multipliers = new double[CheckersGame.BOARD_SIZE];
+        int noMultipliers = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split("\\s+");
+                try {
+                    if (fields[0].equals("checker") && fields.length == 2) {
+                        checkerValue = Double.parseDouble(fields[1]);
+                    } else if (fields[0].equals("king") && fields.length == 2) {
+                        kingValue = Double.parseDouble(fields[1]);
+                    } else {
+                        for (String field : fields) {
+                            if (noMultipliers == CheckersGame.BOARD_SIZE) {
+                                throw new IllegalArgumentException(ERROR_MESSAGE + (noMultipliers + 1));
+                            }
+                            multipliers[noMultipliers++] = Double.parseDouble(field);
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Illegal weight in " + file + " line " + lineNo + ": " + line, e);
+                }
+            }
+        }
+
+        if (Double.isNaN(checkerValue) || Double.isNaN(kingValue)) {
+            throw new IllegalArgumentException("Missing piece values in " + file);
+        }
+        return new EvalWeights(checkerValue, kingValue, Arrays.copyOf(multipliers, noMultipliers));
+    }
+
+    // writes these weights to the given file, in the format read by load
+    public void save(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# checkers evaluation weights");
+            writer.newLine();
+            writer.write("checker " + checkerValue);
+            writer.newLine();
+            writer.write("king " + kingValue);
+            writer.newLine();
+            writer.write("# position multipliers, from the top row of the board");
+            writer.newLine();
+
+            for (int i = 0; i < CheckersGame.BOARD_SIZE; i++) {
+                writer.write(positionMultiplier[i] + (i % 8 == 7 ? "" : " "));
+                if (i % 8 == 7) {
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    // returns a copy of these weights with the given piece values
+    public EvalWeights withPieceValues(double checkerValue, double kingValue) {
+        return new EvalWeights(checkerValue, kingValue, positionMultiplier);
+    }
+
+    // returns the value of a checker
+    public double getCheckerValue() {
+        return checkerValue;
+    }
+
+    // returns the value of a king
+    public double getKingValue() {
+        return kingValue;
+    }
+
+    // returns the multiplier of the value of a piece on the given square
+    public double getPositionMultiplier(int square) {
+        return positionMultiplier[square];
+    }
+
+    // returns the score of a piece of the given type on the given square, in centipieces
+    public int getPieceScore(int type, int square) {
+        return type == CheckersPiece.KING ? kingScores[square] : checkerScores[square];
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof EvalWeights)) {
+            return false;
+        }
+        EvalWeights weights = (EvalWeights) other;
+        return checkerValue == weights.checkerValue && kingValue == weights.kingValue
+                && Arrays.equals(positionMultiplier, weights.positionMultiplier);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(positionMultiplier) * 31 + Double.hashCode(checkerValue * 7 + kingValue);
+    }
+
+    @Override
+    public String toString() {
+        return "checker " + checkerValue + " king " + kingValue;
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Analyses the games of a file in Portable Draughts Notation with an engine
+ * and writes them back, annotated, to another file.
+ *
+ * The engine searches every position in which a player is to make a move of
+ * the notation, and the position the game ends in. Each move is annotated with
+ * the evaluation of the position it leads to, from White's point of view and
+ * in pieces, followed by the best move the engine found instead, if it is not
+ * the one played. A move that loses at least the given number of pieces by
+ * the engine's evaluation is marked as a mistake (?) or a blunder (??).
+ *
+ * The games are analysed on a fixed pool of threads, one game per thread at a
+ * time, each thread with its own transposition table, which is cleared before
+ * every game. No more than a few games per thread are read ahead of the game
+ * being written, so the analysis holds back the reading of the file rather
+ * than filling the memory, and the games are written in the order they were
+ * read. Games that cannot be read or replayed are left out.
+ *
+ * Every second or so, the analysis records how many games it has read and
+ * how long the output file was after writing them, in a checkpoint file next
+ * to the output. If it is stopped and started again with the same files, it
+ * cuts off anything written after the checkpoint and carries on with the
+ * games after it. The checkpoint is deleted once all games have been
+ * analysed.
+ *
+ * Usage: java szymon.zielinski.boardgame.checkers.GameAnalyzer [options] IN OUT
+ *
+ * -engine E      the engine, as in Tournament (default: medium)
+ * -threads N     the number of games analysed at once (default: one per core)
+ * -hash MB       the size of the transposition table of each thread (default: 4)
+ * -mistake P     the loss, in pieces, of a mistake (default: 0.5)
+ * -blunder P     the loss, in pieces, of a blunder (default: 1.0)
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class GameAnalyzer {
+
+    // the score of a won position, in pieces; higher scores are cut down to it
+    static final double WIN_SCORE = 100;
+
+    // the number of games read ahead of the game being written, for each thread
+    private static final int GAMES_AHEAD = 4;
+
+    private static final long CHECKPOINT_INTERVAL_NANOS = 1000000000L;
+
+    private final Tournament.Engine engine;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int hashSizeInMb = 4;
+    private double mistake = 0.5;
+    private double blunder = 1.0;
+
+    // the transposition table of each thread
+    private final ThreadLocal<TranspositionTable> tables = new ThreadLocal<TranspositionTable>();
+
+    // create an analysis with the given engine, which must not move at random
+    public GameAnalyzer(Tournament.Engine engine) {
+        if (engine.getDepth() == CheckersGame.BEGINNER_AI) {
+            throw new IllegalArgumentException("The engine " + engine + " does not search");
+        }
+        this.engine = engine;
+    }
+
+    // changes the number of games analysed at once
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    // changes the size of the transposition table of each thread
+    public void setHashSize(int sizeInMb) {
+        this.hashSizeInMb = sizeInMb;
+    }
+
+    // changes the losses, in pieces, of the moves marked as mistakes and as blunders
+    public void setThresholds(double mistake, double blunder) {
+        this.mistake = mistake;
+        this.blunder = blunder;
+    }
+
+    /*
+     * Returns a copy of the game with every move annotated. Throws
+     * IllegalArgumentException if the game could not be read or one of its
+     * moves is not valid.
+     */
+    public PdnGame analyze(PdnGame game) {
+        int[] hops = game.getHops();
+        long[] start = game.getStart();
+        CheckersGame board = PositionCodec.decode(start, 0);
+        int player = PositionCodec.player(start, 0);
+        PdnGame annotated = new PdnGame(game);
+
+        board.setTranspositionTable(table());
+        board.setAI(CheckersGame.NO_AI);
+        board.setSearchThreads(1);
+        annotated.setTag("Annotator", engine.toString());
+
+        SearchResult before = search(board, player);
+        for (int i = 0, moveNo = 0; i < hops.length; moveNo++) {
+            int end = PdnGame.moveEnd(hops, i);
+            String played = PdnWriter.move(hops, i, end);
+            int moved = player;
+
+            for (; i < end; i++) {
+                board.movePiece(CheckersMove.source(hops[i]), CheckersMove.dest(hops[i]), player);
+            }
+            player = (player + 1) % 2;
+
+            SearchResult after = search(board, player);
+            double scoreBefore = clamp(before.getScore());
+            double scoreAfter = clamp(after.getScore());
+
+            // the scores are from the computer's point of view, which is Black's
+            double loss = moved == CheckersPiece.COMPUTER_PLAYER ? scoreBefore - scoreAfter : scoreAfter - scoreBefore;
+            String comment = String.format(Locale.ROOT, "%+.2f", -scoreAfter).replace("-0.00", "+0.00");
+
+            int[] best = before.getPrincipalVariation();
+            if (best.length > 0) {
+                String bestMove = PdnWriter.move(best, 0, PdnGame.moveEnd(best, 0));
+                if (!bestMove.equals(played)) {
+                    comment += " best " + bestMove;
+                }
+            }
+
+            annotated.annotate(moveNo, loss >= blunder ? "??" : loss >= mistake ? "?" : null, comment);
+            before = after;
+        }
+        return annotated;
+    }
+
+    /*
+     * Analyses the games of the input file and writes them to the output
+     * file, carrying on from the checkpoint of the output if there is one.
+     * Progress is printed to the given stream, if not null, at every
+     * checkpoint. Returns the number of games written by this run.
+     */
+    public long analyze(Path input, Path output, PrintStream progress)
+            throws IOException, InterruptedException {
+        Path checkpoint = checkpointFile(output);
+        long done = resume(input, output, checkpoint);
+        long written = 0, invalid = 0;
+        long start = System.nanoTime();
+        long lastCheckpoint = start;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Deque<Future<PdnGame>> pending = new ArrayDeque<Future<PdnGame>>();
+
+        try (PdnReader reader = new PdnReader(input);
+                PdnWriter writer = new PdnWriter(Files.newBufferedWriter(output, StandardCharsets.ISO_8859_1,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            for (long i = 0; i < done; i++) {
+                if (reader.next() == null) {
+                    throw new IllegalArgumentException("The checkpoint " + checkpoint + " does not match " + input);
+                }
+            }
+
+            PdnGame game = reader.next();
+            while (game != null || !pending.isEmpty()) {
+                // read ahead until enough games are waiting, then write the oldest once it is done
+                if (game != null && pending.size() < threads * GAMES_AHEAD) {
+                    final PdnGame next = game;
+                    pending.add(pool.submit(() -> analyze(next)));
+                    game = reader.next();
+                    continue;
+                }
+
+                try {
+                    writer.write(pending.removeFirst().get());
+                    written++;
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof IllegalArgumentException)) {
+                        throw new IllegalStateException(e.getCause());
+                    }
+                    System.err.println(e.getCause().getMessage());
+                    invalid++;
+                }
+                done++;
+
+                if (System.nanoTime() - lastCheckpoint > CHECKPOINT_INTERVAL_NANOS) {
+                    writer.flush();
+                    saveCheckpoint(checkpoint, input, done, Files.size(output));
+                    lastCheckpoint = System.nanoTime();
+
+                    if (progress != null) {
+                        progress.println(String.format(Locale.ROOT, "%d games, %d invalid, %.1f games/s", done,
+                                invalid, (written + invalid) / ((lastCheckpoint - start) / 1e9)));
+                    }
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Files.deleteIfExists(checkpoint);
+        if (progress != null) {
+            progress.println(String.format(Locale.ROOT, "%d games written, %d invalid, %.2f s", written, invalid,
+                    (System.nanoTime() - start) / 1e9));
+        }
+        return written;
+    }
+
+    // searches the position, or scores it if the game has ended
+    private SearchResult search(CheckersGame board, int player) {
+        int winner = board.winner(player);
+        if (winner != -1) {
+            return new SearchResult(CheckersMove.NONE,
+                    winner == CheckersPiece.COMPUTER_PLAYER ? WIN_SCORE : -WIN_SCORE, 0, 0);
+        }
+        return engine.search(board, player);
+    }
+
+    // returns the transposition table of the current thread, cleared
+    private TranspositionTable table() {
+        TranspositionTable table = tables.get();
+
+        if (table == null) {
+            table = new TranspositionTable(hashSizeInMb);
+            tables.set(table);
+        }
+        table.clear();
+        return table;
+    }
+
+    private static double clamp(double score) {
+        return Math.max(-WIN_SCORE, Math.min(WIN_SCORE, score));
+    }
+
+    // returns the checkpoint file of the given output file
+    static Path checkpointFile(Path output) {
+        return output.resolveSibling(output.getFileName() + ".checkpoint");
+    }
+
+    /*
+     * Returns the number of games of the input already analysed by an earlier
+     * run, after cutting the output back to where it was when they were, or 0
+     * with an empty output if there is no checkpoint.
+     */
+    private static long resume(Path input, Path output, Path checkpoint) throws IOException {
+        if (!Files.exists(checkpoint)) {
+            Files.deleteIfExists(output);
+            return 0;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(checkpoint)) {
+            properties.load(in);
+        }
+        if (!input.toAbsolutePath().toString().equals(properties.getProperty("input"))) {
+            throw new IllegalArgumentException("The checkpoint " + checkpoint + " is for "
+                    + properties.getProperty("input"));
+        }
+
+        long games = Long.parseLong(properties.getProperty("games"));
+        long bytes = Long.parseLong(properties.getProperty("bytes"));
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE)) {
+            if (channel.size() < bytes) {
+                throw new IllegalArgumentException("The output " + output + " is shorter than its checkpoint");
+            }
+            channel.truncate(bytes);
+        }
+        return games;
+    }
+
+    // records that the given number of games have been analysed and written, replacing the checkpoint at once
+    private static void saveCheckpoint(Path checkpoint, Path input, long games, long bytes) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("input", input.toAbsolutePath().toString());
+        properties.setProperty("games", Long.toString(games));
+        properties.setProperty("bytes", Long.toString(bytes));
+
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, "GameAnalyzer checkpoint");
+        }
+        Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Tournament.Engine engine = Tournament.Engine.parse("medium");
+        GameAnalyzer analyzer;
+        int threads = 0, hash = 4;
+        double mistake = 0.5, blunder = 1.0;
+        int i = 0;
+
+        for (; i + 2 < args.length; i += 2) {
+            String value = args[i + 1];
+
+            if (args[i].equals("-engine")) {
+                engine = Tournament.Engine.parse(value);
+            } else if (args[i].equals("-threads")) {
+                threads = Integer.parseInt(value);
+            } else if (args[i].equals("-hash")) {
+                hash = Integer.parseInt(value);
+            } else if (args[i].equals("-mistake")) {
+                mistake = Double.parseDouble(value);
+            } else if (args[i].equals("-blunder")) {
+                blunder = Double.parseDouble(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (i + 2 != args.length) {
+            throw new IllegalArgumentException("Usage: GameAnalyzer [options] IN OUT");
+        }
+
+        analyzer = new GameAnalyzer(engine);
+        if (threads > 0) {
+            analyzer.setThreads(threads);
+        }
+        analyzer.setHashSize(hash);
+        analyzer.setThresholds(mistake, blunder);
+
+        System.out.println(engine + ", " + analyzer.threads + " threads");
+        analyzer.analyze(Paths.get(args[i]), Paths.get(args[i + 1]), System.out);
+    }
+}
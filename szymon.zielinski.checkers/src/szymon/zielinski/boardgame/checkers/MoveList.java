@@ -0,0 +1,101 @@
+/*
+ * A reusable list of moves encoded by CheckersMove. The moves are kept in an
+ * int array that only grows, so a list that is cleared and filled again does
+ * not create any objects once it has reached its working size.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.util.Arrays;
+
+public class MoveList {
+
+    // more than enough for any position that occurs in a real game
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private int[] moves;
+    private int size;
+
+    public MoveList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MoveList(int capacity) {
+        moves = new int[Math.max(capacity, 1)];
+    }
+
+    // add a move to the end of the list
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    // return the move at the given index
+    public int get(int index) {
+        if (index >= size || index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return moves[index];
+    }
+
+    // replace the move at the given index
+    public void set(int index, int move) {
+        if (index >= size || index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        moves[index] = move;
+    }
+
+    // return the number of moves in the list
+    public int size() {
+        return size;
+    }
+
+    // check if the list contains no moves
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // remove all moves from the list, keeping the allocated space
+    public void clear() {
+        size = 0;
+    }
+
+    // return the move with the given source and destination, or CheckersMove.NONE
+    public int find(int source, int dest) {
+        for (int i = 0; i < size; i++) {
+            if (CheckersMove.source(moves[i]) == source && CheckersMove.dest(moves[i]) == dest) {
+                return moves[i];
+            }
+        }
+        return CheckersMove.NONE;
+    }
+
+    /*
+     * Moves the given move to the front of the list, keeping the order of the
+     * other moves. Returns false if the list does not contain the move.
+     */
+    public boolean moveToFront(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = move;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // lists the moves in the form: <source> + " " + <destination> + " "
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(size * 6);
+
+        for (int i = 0; i < size; i++) {
+            builder.append(CheckersMove.source(moves[i])).append(' ')
+                    .append(CheckersMove.dest(moves[i])).append(' ');
+        }
+        return builder.toString();
+    }
+}
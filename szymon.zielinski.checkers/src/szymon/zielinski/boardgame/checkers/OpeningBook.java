@@ -0,0 +1,191 @@
+/*
+ * An opening book: the moves played in the opening positions of many games,
+ * with how well they did, as collected by OpeningBookBuilder. The AI plays a
+ * move from the book, if it knows the position, instead of searching.
+ *
+ * The book is a file of fixed-size records, one for each move played in each
+ * position, sorted by the key of the position and then by the move. The file
+ * is mapped into memory rather than read, and the moves of a position are
+ * found by a binary search on its key. The key is the Zobrist key of the
+ * position with the player to move, so the same position is found however it
+ * was reached.
+ *
+ * A move is picked at random, each with a chance in proportion to the points
+ * it scored for the player who made it: two for a win and one for a draw.
+ * Moves that never scored a point are not played, and neither are moves that
+ * are not valid in the position, in case two positions share a key.
+ *
+ * File format, all numbers big-endian:
+ *
+ * int     magic number, "CKBK"
+ * int     version
+ * int     number of records
+ * records long key, int move encoded by CheckersMove, int number of games,
+ *         int points, for each record
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+public class OpeningBook {
+
+    // the file used by games that were not given a book, if it exists
+    public static final String DEFAULT_FILE = "checkers.book";
+
+    static final int MAGIC = 0x434B424B;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 12;
+    static final int RECORD_SIZE = 20;
+
+    // where the fields lie within a record
+    private static final int MOVE_OFFSET = 8;
+    private static final int GAMES_OFFSET = 12;
+    private static final int POINTS_OFFSET = 16;
+
+    private static OpeningBook defaultBook;
+    private static boolean defaultLoaded;
+
+    private final ByteBuffer records;
+    private final int size;
+
+    private OpeningBook(ByteBuffer records, int size) {
+        this.records = records;
+        this.size = size;
+    }
+
+    /*
+     * Returns the book used by all games that were not given their own: the
+     * one in the file named by the system property checkers.book, or in
+     * DEFAULT_FILE, or null if there is no such file.
+     */
+    public static synchronized OpeningBook getDefault() {
+        if (!defaultLoaded) {
+            defaultLoaded = true;
+            Path file = Paths.get(System.getProperty("checkers.book", DEFAULT_FILE));
+
+            if (Files.isRegularFile(file)) {
+                try {
+                    defaultBook = load(file);
+                } catch (IOException | IllegalArgumentException e) {
+                    System.err.println("Cannot load the opening book " + file + ": " + e.getMessage());
+                }
+            }
+        }
+        return defaultBook;
+    }
+
+    // opens a book written by OpeningBookBuilder
+    public static OpeningBook load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Not an opening book: " + file);
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IllegalArgumentException("Not an opening book: " + file);
+            }
+
+            int size = buffer.getInt(8);
+            if (size < 0 || HEADER_SIZE + (long) size * RECORD_SIZE != fileSize) {
+                throw new IllegalArgumentException("Corrupt opening book: " + file);
+            }
+            return new OpeningBook(buffer, size);
+        }
+    }
+
+    // returns the number of moves in the book, over all positions
+    public int size() {
+        return size;
+    }
+
+    /*
+     * Picks a move from the book for the given player, or returns
+     * CheckersMove.NONE if the book has no move for the position that scored
+     * a point.
+     */
+    public int pick(CheckersGame game, int player, Random random) {
+        long key = game.hashKey(player);
+        int first = firstRecord(key);
+        MoveList moves = new MoveList();
+        int total = 0;
+
+        game.generateMoves(player, moves);
+
+        // add up the weights of the valid moves, then walk them again to the chosen one
+        for (int i = first; i < size && key(i) == key; i++) {
+            total += weight(i, moves);
+        }
+        if (total == 0) {
+            return CheckersMove.NONE;
+        }
+
+        int chosen = random.nextInt(total);
+        for (int i = first; ; i++) {
+            chosen -= weight(i, moves);
+            if (chosen < 0) {
+                int move = move(i);
+                return moves.find(CheckersMove.source(move), CheckersMove.dest(move));
+            }
+        }
+    }
+
+    // returns the number of games in which the move of the given record was played
+    int games(int record) {
+        return records.getInt(offset(record) + GAMES_OFFSET);
+    }
+
+    // returns the points scored by the move of the given record
+    int points(int record) {
+        return records.getInt(offset(record) + POINTS_OFFSET);
+    }
+
+    // returns the move of the given record
+    int move(int record) {
+        return records.getInt(offset(record) + MOVE_OFFSET);
+    }
+
+    // returns the key of the given record
+    long key(int record) {
+        return records.getLong(offset(record));
+    }
+
+    // returns the first record with the given key, or the one it would come before
+    int firstRecord(long key) {
+        int low = 0, high = size;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (key(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // returns the chance of the move of the given record being picked, 0 if it is not among the valid moves
+    private int weight(int record, MoveList moves) {
+        int move = move(record);
+
+        if (moves.find(CheckersMove.source(move), CheckersMove.dest(move)) == CheckersMove.NONE) {
+            return 0;
+        }
+        return points(record);
+    }
+
+    // returns where the given record starts in the file
+    private static int offset(int record) {
+        return HEADER_SIZE + record * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Builds an opening book (see OpeningBook) from games played from the start
+ * position, either by the engine against itself or read from a file.
+ *
+ * For each of the first moves of every game, the builder counts the games in
+ * which the move was played in its position, and the points it scored for
+ * the player who made it: two for a win and one for a draw. A move is a
+ * single step or a single capture, as in CheckersGame, so the jumps of a
+ * multi-jump are counted as separate moves, all by the same player.
+ *
+ * In self-play, the first few moves of each game are picked at random, so
+ * that the games cover more than a single line, and the rest are found by the
+ * given engine, as in Tournament. Only the moves of the engine are added:
+ * the random moves were not chosen for their strength, and a blunder that
+ * happened to be followed by a draw would otherwise stay in the book. In
+ * the positions of the random moves, the move the engine would have played
+ * is added instead, counted as a draw, as the game did not play it out. So
+ * a self-play book covers the first moves of every game from the start
+ * position, with the engine's own move in the positions the random moves
+ * lead through, and its moves as played after them. A game that has not
+ * ended after a given number of moves is drawn.
+ *
+ * Imported games are read from a text file, one per line: the moves as
+ * source-destination pairs of squares, separated by commas, followed by the
+ * result: human, computer or draw. The human player moves first. Empty lines
+ * and lines starting with '#' are skipped.
+ *
+ * Usage: java szymon.zielinski.boardgame.checkers.OpeningBookBuilder [options]
+ *
+ * -selfplay N    play N games of the engine against itself (default: 0)
+ * -engine E      the engine, as in Tournament (default: medium)
+ * -random N      the number of random moves that open each game (default: 3)
+ * -import FILE   add the games in the given file
+ * -plies N       the number of moves of each game to add (default: 12)
+ * -maxmoves N    the number of moves after which a game is drawn (default: 200)
+ * -seed N        the seed of the random moves (default: 1)
+ * -out FILE      the book file to write (default: checkers.book)
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class OpeningBookBuilder {
+
+    // the winner of a game that neither player won
+    public static final int DRAW = -1;
+
+    private final int maxPlies;
+
+    // the games and points of each move played, by the key of its position
+    private final Map<Long, Map<Integer, int[]>> positions = new HashMap<>();
+    private int noGames;
+
+    // create a builder that adds the first maxPlies moves of every game
+    public OpeningBookBuilder(int maxPlies) {
+        this.maxPlies = maxPlies;
+    }
+
+    // returns the number of games added so far
+    public int getGames() {
+        return noGames;
+    }
+
+    /*
+     * Adds a game played from the start position, with the human player
+     * moving first, won by the given player or drawn (DRAW).
+     */
+    public void addGame(int[] moves, int winner) {
+        addGame(moves, 0, winner);
+    }
+
+    // as above, leaving out the moves before the given one, which are only played to reach the later positions
+    public void addGame(int[] moves, int first, int winner) {
+        CheckersGame game = new CheckersGame();
+        int player = CheckersPiece.HUMAN_PLAYER;
+
+        for (int i = 0; i < moves.length && i < maxPlies; i++) {
+            long key = game.hashKey(player);
+            int move = moves[i];
+
+            if (!game.movePiece(CheckersMove.source(move), CheckersMove.dest(move), player)) {
+                throw new IllegalArgumentException("Invalid move " + (i + 1) + ": " + CheckersMove.toString(move));
+            }
+
+            if (i >= first) {
+                record(key, move, player, winner);
+            }
+
+            if (!game.canAttackAgain()) {
+                player = (player + 1) % 2;
+            }
+        }
+        noGames++;
+    }
+
+    // counts a move made by the given player in the position with the given key, in a game won by winner or drawn
+    private void record(long key, int move, int player, int winner) {
+        int[] record = positions.computeIfAbsent(key, k -> new HashMap<>())
+                .computeIfAbsent(CheckersMove.quiet(CheckersMove.source(move), CheckersMove.dest(move), false),
+                        k -> new int[2]);
+        record[0]++;
+        record[1] += winner == DRAW ? 1 : winner == player ? 2 : 0;
+    }
+
+    /*
+     * Plays the given number of games of the engine against itself and adds
+     * them, opening each with randomMoves random moves, which are not added.
+     * The move of the engine in the position of each random move is added
+     * instead, as a draw.
+     */
+    public void selfPlay(Tournament.Engine engine, int games, int randomMoves, int maxMoves, Random random) {
+        TranspositionTable table = new TranspositionTable(16);
+        MoveList moves = new MoveList();
+
+        // the move of the engine in each position a random move was played in, searched for once
+        Map<Long, Integer> engineMoves = new HashMap<>();
+
+        for (int i = 0; i < games; i++) {
+            CheckersGame game = new CheckersGame();
+            int[] played = new int[maxMoves];
+            int player = CheckersPiece.HUMAN_PLAYER;
+            int noMoves = 0;
+
+            table.clear();
+            game.setTranspositionTable(table);
+            game.setAI(CheckersGame.NO_AI);
+
+            while (game.winner(player) == -1 && noMoves < maxMoves) {
+                int move;
+                game.generateMoves(player, moves);
+
+                if (noMoves < randomMoves) {
+                    if (noMoves < maxPlies) {
+                        long key = game.hashKey(player);
+                        Integer best = engineMoves.get(key);
+                        if (best == null) {
+                            best = engine.move(game, player, random);
+                            engineMoves.put(key, best);
+                        }
+                        record(key, best, player, DRAW);
+                    }
+                    move = moves.get(random.nextInt(moves.size()));
+                } else {
+                    move = engine.move(game, player, random);
+                }
+
+                game.makeMove(move);
+                played[noMoves++] = move;
+
+                if (!game.canAttackAgain()) {
+                    player = (player + 1) % 2;
+                }
+            }
+
+            addGame(Arrays.copyOf(played, noMoves), randomMoves,
+                    game.winner(player) == -1 ? DRAW : game.winner(player));
+        }
+    }
+
+    // adds the games in the given file, in the format described above
+    public void importGames(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                int space = line.lastIndexOf(' ');
+                if (space < 0) {
+                    throw new IllegalArgumentException("Missing result on line " + lineNo + " of " + file);
+                }
+
+                String[] squares = line.substring(0, space).split(",");
+                int[] moves = new int[squares.length];
+                for (int i = 0; i < squares.length; i++) {
+                    String[] parts = squares[i].split("-");
+                    moves[i] = CheckersMove.quiet(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                            false);
+                }
+                addGame(moves, parseResult(line.substring(space + 1), lineNo, file));
+            }
+        }
+    }
+
+    // returns the winner named by the result of an imported game
+    private static int parseResult(String result, int lineNo, Path file) {
+        switch (result) {
+            case "human":
+                return CheckersPiece.HUMAN_PLAYER;
+            case "computer":
+                return CheckersPiece.COMPUTER_PLAYER;
+            case "draw":
+                return DRAW;
+            default:
+                throw new IllegalArgumentException("Unknown result on line " + lineNo + " of " + file + ": " + result);
+        }
+    }
+
+    /*
+     * Writes the book to the given file, with the records sorted by the key
+     * of their position and then by their move.
+     */
+    public void write(Path file) throws IOException {
+        Long[] keys = positions.keySet().toArray(new Long[0]);
+        Arrays.sort(keys);
+        int size = 0;
+
+        for (Map<Integer, int[]> moves : positions.values()) {
+            size += moves.size();
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeInt(size);
+
+            for (Long key : keys) {
+                Map<Integer, int[]> moves = positions.get(key);
+                Integer[] sorted = moves.keySet().toArray(new Integer[0]);
+                Arrays.sort(sorted);
+
+                for (Integer move : sorted) {
+                    out.writeLong(key);
+                    out.writeInt(move);
+                    out.writeInt(moves.get(move)[0]);
+                    out.writeInt(moves.get(move)[1]);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Tournament.Engine engine = Tournament.Engine.parse("medium");
+        OpeningBookBuilder builder;
+        Path out = Paths.get(OpeningBook.DEFAULT_FILE);
+        Path imported = null;
+        int games = 0, randomMoves = 3, plies = 12, maxMoves = 200;
+        long seed = 1;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+
+            if (args[i].equals("-selfplay")) {
+                games = Integer.parseInt(value);
+            } else if (args[i].equals("-engine")) {
+                engine = Tournament.Engine.parse(value);
+            } else if (args[i].equals("-random")) {
+                randomMoves = Integer.parseInt(value);
+            } else if (args[i].equals("-import")) {
+                imported = Paths.get(value);
+            } else if (args[i].equals("-plies")) {
+                plies = Integer.parseInt(value);
+            } else if (args[i].equals("-maxmoves")) {
+                maxMoves = Integer.parseInt(value);
+            } else if (args[i].equals("-seed")) {
+                seed = Long.parseLong(value);
+            } else if (args[i].equals("-out")) {
+                out = Paths.get(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        long start = System.nanoTime();
+        builder = new OpeningBookBuilder(plies);
+        if (imported != null) {
+            builder.importGames(imported);
+        }
+        builder.selfPlay(engine, games, randomMoves, maxMoves, new Random(seed));
+        builder.write(out);
+
+        System.out.println(String.format(java.util.Locale.ROOT, "%d games written to %s in %.1f s",
+                builder.getGames(), out, (System.nanoTime() - start) / 1e9));
+    }
+}
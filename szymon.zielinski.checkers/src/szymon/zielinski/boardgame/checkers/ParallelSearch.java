@@ -0,0 +1,100 @@
+/*
+ * Runs several CheckersSearches on the same position at once (Lazy SMP).
+ *
+ * The searches do not split the tree between them. Each one searches the whole
+ * tree on its own, but all of them share the transposition table of the game,
+ * so every search skips the positions that another one has already settled.
+ * Half of the helper searches start one move deeper than the main search,
+ * which makes them explore different parts of the tree at any given time.
+ *
+ * The main search runs on the calling thread and obeys the budget. The helpers
+ * run in a ForkJoinPool until the main search ends, and are then stopped. The
+ * result of the deepest completed search is returned, the main search winning
+ * ties, so that with one thread the result is the same as that of a plain
+ * CheckersSearch. Only the main search reports its progress to the listener,
+ * and only it runs the search checkpoint of the game.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class ParallelSearch {
+
+    private final CheckersGame game;
+    private final ForkJoinPool pool;
+    private final int threads;
+    private final int player;
+    private final SearchListener listener;
+
+    // create a search for a move of the given player, with the given number of threads
+    ParallelSearch(CheckersGame game, ForkJoinPool pool, int threads, int player, SearchListener listener) {
+        this.game = game;
+        this.pool = pool;
+        this.threads = threads;
+        this.player = player;
+        this.listener = listener;
+    }
+
+    /*
+     * Searches for the best move for the player, looking up to maxDepth moves
+     * ahead, within the given budget. The node budget applies to the main
+     * search only; the returned number of nodes is that of all searches.
+     */
+    SearchResult search(int maxDepth, long budgetNanos, long nodeBudget) {
+        if (threads <= 1) {
+            CheckersSearch search = new CheckersSearch(game);
+            search.setPlayer(player);
+            search.setListener(listener);
+            search.setCheckpoint(game.getSearchCheckpoint());
+            return search.search(maxDepth, budgetNanos, nodeBudget);
+        }
+
+        AtomicBoolean stop = new AtomicBoolean();
+        game.getTranspositionTable().newSearch();
+
+        // start the helpers, then run the main search on this thread
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        ForkJoinTask<SearchResult>[] helpers = new ForkJoinTask[threads - 1];
+
+        for (int i = 0; i < helpers.length; i++) {
+            CheckersSearch helper = new CheckersSearch(game, stop);
+            helper.setPlayer(player);
+            int startDepth = 1 + (i + 1) % 2;
+            helpers[i] = pool.submit(() -> helper.iterate(startDepth, maxDepth, 0, 0));
+        }
+
+        CheckersSearch main = new CheckersSearch(game, stop);
+        SearchResult result;
+
+        main.setPlayer(player);
+        main.setListener(listener);
+        main.setCheckpoint(game.getSearchCheckpoint());
+        try {
+            result = main.iterate(1, maxDepth, budgetNanos, nodeBudget);
+        } finally {
+            stop.set(true);
+        }
+
+        // collect the helpers, keeping the deepest result
+        long nodes = result.getNodes();
+        long quiescenceNodes = result.getQuiescenceNodes();
+        long cutoffs = result.getCutoffs();
+        long firstMoveCutoffs = result.getFirstMoveCutoffs();
+
+        for (ForkJoinTask<SearchResult> helper : helpers) {
+            SearchResult helperResult = helper.join();
+            nodes += helperResult.getNodes();
+            quiescenceNodes += helperResult.getQuiescenceNodes();
+            cutoffs += helperResult.getCutoffs();
+            firstMoveCutoffs += helperResult.getFirstMoveCutoffs();
+
+            if (helperResult.getDepth() > result.getDepth()) {
+                result = helperResult;
+            }
+        }
+        return new SearchResult(result.getMove(), result.getScore(), result.getDepth(),
+                result.getPrincipalVariation(), nodes, quiescenceNodes, cutoffs, firstMoveCutoffs);
+    }
+}
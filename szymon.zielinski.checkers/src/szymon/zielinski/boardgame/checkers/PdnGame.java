@@ -0,0 +1,411 @@
+/*
+ * A game record in Portable Draughts Notation (PDN): the tags of the game,
+ * such as the players, the date and the result, and its moves, as read by
+ * PdnReader or written by PdnWriter.
+ *
+ * As in PositionCodec, the human player is White and the computer is Black,
+ * and the dark squares are numbered from 1 to 32, 1 to 4 on the top row where
+ * the computer starts. A game starts from the start position with White to
+ * move, unless a FEN tag gives another one in the notation of PositionCodec.
+ * The result is one of 1-0 (White won), 0-1 (Black won), 1/2-1/2 (drawn) or *
+ * (unknown); the draughts forms 2-0, 0-2 and 1-1 are read as the same.
+ *
+ * A move of the notation is either a step, such as 22-18, or a capture, with
+ * all squares the piece lands on, such as 22x15x6, or with only the first and
+ * the last, such as 22x6. The moves of a game that was read are only checked
+ * when its hops are asked for: the game is then replayed, each step found
+ * among the moves of generateMoves and each capture searched for among those
+ * of generateCaptures, hop by hop, and made with makeMove, so that the moves
+ * of many games can be checked at once on separate threads. A hop is a single
+ * step or capture as in CheckersMove, so a move of the notation is made up of
+ * one or more hops.
+ *
+ * The moves of a game can be annotated with a move strength glyph, such as ?
+ * for a weak move, and a comment, which are written after the move. Comments
+ * and glyphs in games that are read are skipped.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class PdnGame {
+
+    public static final String WHITE_WINS = "1-0";
+    public static final String BLACK_WINS = "0-1";
+    public static final String DRAWN = "1/2-1/2";
+    public static final String UNKNOWN = "*";
+
+    public static final String RESULT_TAG = "Result";
+    public static final String FEN_TAG = "FEN";
+
+    // the start position, with White to move, in the notation of PositionCodec
+    static final String START_FEN = "W:W21-32:B1-12";
+
+    private final Map<String, String> tags = new LinkedHashMap<>();
+
+    /*
+     * The moves as read, not yet checked: for each move, the number of its
+     * squares times two, plus one if it is a capture, then the squares.
+     */
+    private int[] squares = new int[0];
+    private int noSquares;
+
+    // the hops of the game once the moves have been replayed
+    private int[] hops = new int[64];
+    private int noHops;
+    private boolean replayed = true;
+
+    // the glyph and the comment after each move, if any
+    private String[] glyphs = new String[0];
+    private String[] comments = new String[0];
+
+    private String error;
+    private long line;
+
+    // create a game from the start position, with an unknown result
+    public PdnGame() {
+    }
+
+    // create a game from the given state, encoded by PositionCodec, with an unknown result
+    public PdnGame(long[] start) {
+        this();
+        String fen = PositionCodec.format(start, 0, new StringBuilder()).toString();
+        if (!fen.equals(START_FEN)) {
+            tags.put(FEN_TAG, fen);
+        }
+    }
+
+    // copy constructor
+    public PdnGame(PdnGame another) {
+        this.tags.putAll(another.tags);
+        this.squares = Arrays.copyOf(another.squares, another.noSquares);
+        this.noSquares = another.noSquares;
+        this.hops = Arrays.copyOf(another.hops, Math.max(another.noHops, 16));
+        this.noHops = another.noHops;
+        this.replayed = another.replayed;
+        this.glyphs = another.glyphs.clone();
+        this.comments = another.comments.clone();
+        this.error = another.error;
+        this.line = another.line;
+    }
+
+    // returns the tags of the game, in the order they were added, which must not be changed
+    public Map<String, String> getTags() {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    // returns the value of the given tag, or null if the game does not have it
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    // sets the value of the given tag
+    public void setTag(String name, String value) {
+        if (name.equals(RESULT_TAG)) {
+            String result = result(value);
+            if (result == null) {
+                throw new IllegalArgumentException("Not a result: " + value);
+            }
+            value = result;
+        }
+        tags.put(name, value);
+    }
+
+    // returns the result of the game
+    public String getResult() {
+        return tags.getOrDefault(RESULT_TAG, UNKNOWN);
+    }
+
+    // sets the result of the game
+    public void setResult(String result) {
+        setTag(RESULT_TAG, result);
+    }
+
+    // returns the player who won the game, or -1 if it was drawn or the result is unknown
+    public int getWinner() {
+        switch (getResult()) {
+            case WHITE_WINS:
+                return CheckersPiece.HUMAN_PLAYER;
+            case BLACK_WINS:
+                return CheckersPiece.COMPUTER_PLAYER;
+            default:
+                return -1;
+        }
+    }
+
+    // returns the state the game starts from, encoded by PositionCodec
+    public long[] getStart() {
+        long[] words = new long[PositionCodec.WORDS];
+        String fen = tags.getOrDefault(FEN_TAG, START_FEN);
+
+        // many files end the position with a full stop
+        if (fen.endsWith(".")) {
+            fen = fen.substring(0, fen.length() - 1);
+        }
+        PositionCodec.parse(fen, words, 0);
+        return words;
+    }
+
+    // returns a new game in the state this game starts from
+    public CheckersGame startGame() {
+        return PositionCodec.decode(getStart(), 0);
+    }
+
+    // returns the number of the line of the file the game starts on, or 0 if it was not read
+    public long getLine() {
+        return line;
+    }
+
+    /*
+     * Returns the hops of the game, replaying the moves that were read if need
+     * be. Throws IllegalArgumentException if the game could not be read or one
+     * of its moves is not valid.
+     */
+    public int[] getHops() {
+        if (!replayed) {
+            replay();
+        }
+        return Arrays.copyOf(hops, noHops);
+    }
+
+    // checks if the game could be read and all its moves are valid
+    public boolean isValid() {
+        try {
+            getHops();
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /*
+     * Annotates the move with the given number, counting from 0 over the
+     * moves of both players, with a glyph and a comment, either of which may
+     * be null.
+     */
+    public void annotate(int move, String glyph, String comment) {
+        if (move >= glyphs.length) {
+            glyphs = Arrays.copyOf(glyphs, Math.max(move + 1, glyphs.length * 2));
+            comments = Arrays.copyOf(comments, glyphs.length);
+        }
+        glyphs[move] = glyph;
+        comments[move] = comment;
+    }
+
+    // returns the glyph of the move with the given number, or null if none
+    public String getGlyph(int move) {
+        return move < glyphs.length ? glyphs[move] : null;
+    }
+
+    // returns the comment on the move with the given number, or null if none
+    public String getComment(int move) {
+        return move < comments.length ? comments[move] : null;
+    }
+
+    // adds a hop, a step or a capture from one square of CheckersGame to another, to the end of the game
+    public void addHop(int source, int dest) {
+        if (!replayed) {
+            replay();
+        }
+
+        // a capture moves the piece two rows, a step only one
+        add(Math.abs(dest - source) > 9
+                ? CheckersMove.capture(source, dest, false)
+                : CheckersMove.quiet(source, dest, false));
+    }
+
+    /*
+     * Adds a move written in the notation, such as 22-18 or 22x15x6, to be
+     * checked when the hops are asked for. Returns false if it is not
+     * written as a move.
+     */
+    boolean addMove(CharSequence move) {
+        int n = 0;
+        int number = 0;
+        boolean capture = false;
+
+        // the number of squares, then the squares, as stored
+        if (noSquares + move.length() + 1 > squares.length) {
+            squares = Arrays.copyOf(squares, Math.max(squares.length * 2, noSquares + move.length() + 1));
+        }
+
+        for (int i = 0; i <= move.length(); i++) {
+            char c = i < move.length() ? move.charAt(i) : '-';
+
+            if (c >= '0' && c <= '9' && number < BitboardPosition.SQUARES) {
+                number = number * 10 + c - '0';
+            } else if ((c == '-' || c == 'x' || c == ':') && number >= 1 && number <= BitboardPosition.SQUARES) {
+                squares[noSquares + 1 + n++] = number;
+                number = 0;
+                capture |= c != '-';
+            } else {
+                return false;
+            }
+        }
+
+        squares[noSquares] = n * 2 + (capture ? 1 : 0);
+        noSquares += n + 1;
+        replayed = false;
+        return true;
+    }
+
+    // marks the game as one that could not be read, for the given reason
+    void setError(String error) {
+        if (this.error == null) {
+            this.error = error;
+        }
+        replayed = false;
+    }
+
+    void setLine(long line) {
+        this.line = line;
+    }
+
+    // replays the moves as read from the start of the game, turning them into hops
+    private void replay() {
+        if (error != null) {
+            throw invalid(error);
+        }
+
+        CheckersGame game;
+        long[] start;
+        try {
+            start = getStart();
+            game = PositionCodec.decode(start, 0);
+        } catch (IllegalArgumentException e) {
+            throw invalid(e.getMessage());
+        }
+
+        int player = PositionCodec.player(start, 0);
+        MoveList moves = new MoveList();
+        noHops = 0;
+
+        for (int i = 0, moveNo = 1; i < noSquares; moveNo++) {
+            int n = squares[i] >> 1;
+            boolean capture = (squares[i] & 1) != 0;
+            int first = i + 1;
+            i = first + n;
+
+            if (game.winner(player) != -1) {
+                throw invalid("move " + moveNo + " after the end of the game");
+            }
+
+            if (!capture) {
+                game.generateMoves(player, moves);
+                int move = n == 2 ? moves.find(square(squares[first]), square(squares[first + 1])) : CheckersMove.NONE;
+
+                if (move == CheckersMove.NONE || CheckersMove.isCapture(move)) {
+                    throw invalid("move " + moveNo + " is not a valid step");
+                }
+                game.makeMove(move);
+                add(move);
+            } else if (n < 2 || !jump(game, player, square(squares[first]), first + 1, i)) {
+                throw invalid("move " + moveNo + " is not a valid capture");
+            }
+            player = (player + 1) % 2;
+        }
+
+        squares = new int[0];
+        noSquares = 0;
+        replayed = true;
+    }
+
+    /*
+     * Captures with the piece on the given square through the squares of the
+     * move read from next up to end, adding the hops to the game. A capture
+     * may be written with only some of the squares the piece lands on, so the
+     * hops are searched for, backtracking when they do not lead through the
+     * rest of the squares. The capture has to end on the last square. Returns
+     * false if there is no such capture.
+     */
+    private boolean jump(CheckersGame game, int player, int source, int next, int end) {
+        MoveList moves = new MoveList(16);
+        game.generateCaptures(player, moves);
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int dest = CheckersMove.dest(move);
+            if (CheckersMove.source(move) != source) {
+                continue;
+            }
+
+            game.makeMove(move);
+            add(move);
+
+            // land on the next square written, or pass over it to a square that is not written
+            boolean found = false;
+            if (dest == square(squares[next])) {
+                found = next + 1 == end ? !game.canAttackAgain()
+                        : game.canAttackAgain() && jump(game, player, dest, next + 1, end);
+            }
+            if (found || game.canAttackAgain() && jump(game, player, dest, next, end)) {
+                return true;
+            }
+
+            game.unmakeMove();
+            noHops--;
+        }
+        return false;
+    }
+
+    private void add(int move) {
+        if (noHops == hops.length) {
+            hops = Arrays.copyOf(hops, noHops * 2);
+        }
+        hops[noHops++] = move;
+    }
+
+    private IllegalArgumentException invalid(String message) {
+        return new IllegalArgumentException(line > 0 ? "Game at line " + line + ": " + message : message);
+    }
+
+    /*
+     * Returns the end of the move of the notation that starts with the hop at
+     * the given index: the hops of a multi-jump follow on from each other.
+     */
+    static int moveEnd(int[] hops, int start) {
+        int end = start + 1;
+        while (end < hops.length && CheckersMove.isCapture(hops[end])
+                && CheckersMove.source(hops[end]) == CheckersMove.dest(hops[end - 1])) {
+            end++;
+        }
+        return end;
+    }
+
+    // returns the square of CheckersGame with the given number of the notation
+    static int square(int number) {
+        return BitboardPosition.square(number - 1);
+    }
+
+    // returns the number of the notation of the given square of CheckersGame
+    static int number(int square) {
+        return BitboardPosition.bit(square) + 1;
+    }
+
+    // returns the result in its usual form, or null if it is not a result
+    static String result(String text) {
+        switch (text) {
+            case WHITE_WINS:
+            case "2-0":
+                return WHITE_WINS;
+            case BLACK_WINS:
+            case "0-2":
+                return BLACK_WINS;
+            case DRAWN:
+            case "1-1":
+                return DRAWN;
+            case UNKNOWN:
+                return UNKNOWN;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return tags.getOrDefault("White", "?") + " - " + tags.getOrDefault("Black", "?") + " " + getResult();
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Reads the games of a file in Portable Draughts Notation one at a time, as
+ * described in PdnGame, so that archives of millions of games can be read
+ * without holding more than a few of them in memory.
+ *
+ * The file is read through a fixed buffer, one byte per character, as PDN
+ * files are written in ISO 8859-1. Comments, variations, numeric annotation
+ * glyphs and move numbers are skipped. A game ends with its result or where
+ * the tags of the next game start. A game that cannot be read is still
+ * returned, and fails when its hops are asked for, so that one bad game does
+ * not end the reading of an archive.
+ *
+ * games() returns the games as a stream. forEachParallel() hands them out
+ * to a pool of threads in batches, while the file is read on by one thread,
+ * so that the games can be replayed on all cores in a bounded amount of
+ * memory, however large the file.
+ *
+ * Usage: java szymon.zielinski.boardgame.checkers.PdnReader [options] FILE
+ *
+ * Reads all games of the file, checks their moves, and prints how many of
+ * them are valid and how fast they were read.
+ *
+ * -threads N     the number of threads that check the games (default: one per core)
+ * -errors N      the number of invalid games to print (default: 10)
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class PdnReader implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    // the number of games handed to the threads at once by forEachParallel()
+    static final int BATCH_SIZE = 4096;
+
+    private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.NONNULL;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final StringBuilder token = new StringBuilder();
+
+    private long line = 1;
+    private boolean lineStart = true;
+    private long bytesRead;
+
+    // create a reader of the given file
+    public PdnReader(Path file) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.READ), DEFAULT_BUFFER_SIZE);
+    }
+
+    // create a reader of the given channel, which is closed with the reader
+    public PdnReader(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.buffer.flip();
+    }
+
+    // returns the number of bytes read so far
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /*
+     * Reads the next game, or returns null at the end of the file. The moves
+     * of the game are not checked.
+     */
+    public PdnGame next() throws IOException {
+        PdnGame game = null;
+        boolean moves = false;
+        int c;
+
+        while ((c = skipSpaces()) != -1) {
+            if (game == null) {
+                game = new PdnGame();
+                game.setLine(line);
+            }
+
+            if (c == '[') {
+                // the tags of the next game
+                if (moves) {
+                    return game;
+                }
+                read();
+                readTag(game);
+            } else if (c == '{') {
+                skipUntil('}');
+            } else if (c == '(') {
+                skipVariation();
+            } else if (c == ';' || c == '%' && lineStart) {
+                skipUntil('\n');
+            } else if (c == '$') {
+                read();
+                readWord();
+            } else if (c == '!' || c == '?') {
+                read();
+            } else {
+                String word = readWord();
+                moves = true;
+
+                if (word.isEmpty()) {
+                    game.setError("unexpected '" + (char) read() + "' on line " + line);
+                } else if (readMovetext(game, word)) {
+                    return game;
+                }
+            }
+        }
+        return game;
+    }
+
+    /*
+     * Returns the games of the file as a sequential stream, which closes the
+     * reader when it is closed. The stream does not split: the size of the
+     * file is not known in games, and a parallel stream would read all of it
+     * before the first game is checked. Use forEachParallel() instead.
+     */
+    public Stream<PdnGame> games() {
+        return stream(new Spliterators.AbstractSpliterator<PdnGame>(Long.MAX_VALUE, CHARACTERISTICS) {
+
+            @Override
+            public boolean tryAdvance(Consumer<? super PdnGame> action) {
+                PdnGame game = nextGame();
+                if (game != null) {
+                    action.accept(game);
+                }
+                return game != null;
+            }
+
+            @Override
+            public Spliterator<PdnGame> trySplit() {
+                return null;
+            }
+        });
+    }
+
+    // returns the games of the file in lists of the given size, the last one possibly shorter, as games() does
+    public Stream<List<PdnGame>> batches(int size) {
+        return stream(new Spliterators.AbstractSpliterator<List<PdnGame>>(Long.MAX_VALUE, CHARACTERISTICS) {
+
+            @Override
+            public boolean tryAdvance(Consumer<? super List<PdnGame>> action) {
+                List<PdnGame> batch = new ArrayList<>(size);
+                PdnGame game;
+
+                while (batch.size() < size && (game = nextGame()) != null) {
+                    batch.add(game);
+                }
+                if (!batch.isEmpty()) {
+                    action.accept(batch);
+                }
+                return !batch.isEmpty();
+            }
+
+            @Override
+            public Spliterator<List<PdnGame>> trySplit() {
+                return null;
+            }
+        });
+    }
+
+    /*
+     * Performs the given action for every game of the file on the threads of
+     * the pool, such as replaying the games to check their moves. The games
+     * are handed to the pool in batches as a parallel stream, while the next
+     * batch is read, so that no more than two batches are held at a time.
+     * The action is not performed in the order of the games.
+     */
+    public void forEachParallel(ForkJoinPool pool, Consumer<PdnGame> action) {
+        ForkJoinTask<?> pending = null;
+        Iterator<List<PdnGame>> batches = batches(BATCH_SIZE).iterator();
+
+        while (batches.hasNext()) {
+            List<PdnGame> batch = batches.next();
+            if (pending != null) {
+                pending.join();
+            }
+            pending = pool.submit(() -> batch.parallelStream().forEach(action));
+        }
+        if (pending != null) {
+            pending.join();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // reads the name and the value of a tag, after its '['
+    private void readTag(PdnGame game) throws IOException {
+        String name = readWord();
+        int c = skipSpaces();
+
+        if (c != '"') {
+            game.setError("tag " + name + " has no value");
+            skipUntil(']');
+            return;
+        }
+        read();
+
+        token.setLength(0);
+        while ((c = read()) != -1 && c != '"') {
+            if (c == '\\') {
+                c = read();
+            }
+            token.append((char) c);
+        }
+        skipUntil(']');
+
+        try {
+            game.setTag(name, token.toString());
+        } catch (IllegalArgumentException e) {
+            game.setError(e.getMessage());
+        }
+    }
+
+    /*
+     * Adds a word of the movetext to the game: a move, a move number, or the
+     * result that ends the game, in which case true is returned.
+     */
+    private boolean readMovetext(PdnGame game, String word) {
+        // a move number, possibly followed by the move without a space
+        int dot = word.lastIndexOf('.');
+        if (dot >= 0) {
+            word = word.substring(dot + 1);
+            if (word.isEmpty()) {
+                return false;
+            }
+        }
+
+        // the result, which ends the game, unless the tags already gave it
+        String result = PdnGame.result(word);
+        if (result != null) {
+            if (game.getResult().equals(PdnGame.UNKNOWN)) {
+                game.setResult(result);
+            }
+            return true;
+        }
+
+        if (!game.addMove(word)) {
+            game.setError("not a move: " + word);
+        }
+        return false;
+    }
+
+    // reads the characters up to a space or a character that is not part of a word
+    private String readWord() throws IOException {
+        token.setLength(0);
+
+        for (int c = peek(); c != -1 && c > ' ' && "[]{}();$!?\"".indexOf(c) < 0; c = peek()) {
+            token.append((char) read());
+        }
+        return token.toString();
+    }
+
+    // skips a variation, with the variations and comments within it
+    private void skipVariation() throws IOException {
+        int depth = 0;
+        int c;
+
+        while ((c = read()) != -1) {
+            if (c == '{') {
+                skipUntil('}');
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return;
+            }
+        }
+    }
+
+    // skips the characters up to and including the given one
+    private void skipUntil(char end) throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != end) {
+        }
+    }
+
+    // skips spaces and returns the next character without reading it, or -1 at the end of the file
+    private int skipSpaces() throws IOException {
+        int c;
+        while ((c = peek()) != -1 && c <= ' ') {
+            read();
+        }
+        return c;
+    }
+
+    // returns the next character without reading it, or -1 at the end of the file
+    private int peek() throws IOException {
+        if (!buffer.hasRemaining()) {
+            buffer.clear();
+            int n;
+            while ((n = channel.read(buffer)) == 0) {
+            }
+            buffer.flip();
+            if (n < 0) {
+                return -1;
+            }
+            bytesRead += n;
+        }
+        return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    // reads the next character, or returns -1 at the end of the file
+    private int read() throws IOException {
+        int c = peek();
+        if (c != -1) {
+            buffer.get();
+            lineStart = c == '\n';
+            if (lineStart) {
+                line++;
+            }
+        }
+        return c;
+    }
+
+    // returns a stream of the given spliterator, which closes the reader when it is closed
+    private <T> Stream<T> stream(Spliterator<T> spliterator) {
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // reads the next game, as next() does, for a stream
+    private PdnGame nextGame() {
+        try {
+            return next();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxErrors = 10;
+        int i = 0;
+
+        for (; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+
+            if (args[i].equals("-threads")) {
+                threads = Integer.parseInt(value);
+            } else if (args[i].equals("-errors")) {
+                maxErrors = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (i >= args.length) {
+            throw new IllegalArgumentException("No file given");
+        }
+
+        Path file = Paths.get(args[i]);
+        LongAdder games = new LongAdder();
+        LongAdder hops = new LongAdder();
+        AtomicInteger errors = new AtomicInteger();
+        final int printedErrors = maxErrors;
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        long start = System.nanoTime();
+
+        try (PdnReader reader = new PdnReader(file)) {
+            reader.forEachParallel(pool, game -> {
+                games.increment();
+                try {
+                    hops.add(game.getHops().length);
+                } catch (IllegalArgumentException e) {
+                    if (errors.getAndIncrement() < printedErrors) {
+                        System.err.println(e.getMessage());
+                    }
+                }
+            });
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format(Locale.ROOT,
+                    "%d games, %d invalid, %d hops, %.2f s on %d threads, %.0f games/s, %.1f MB/s",
+                    games.sum(), errors.get(), hops.sum(), seconds, pool.getParallelism(), games.sum() / seconds,
+                    reader.getBytesRead() / seconds / (1 << 20)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
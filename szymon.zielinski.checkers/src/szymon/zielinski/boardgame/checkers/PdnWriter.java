@@ -0,0 +1,137 @@
+/*
+ * Writes games in Portable Draughts Notation, as described in PdnGame, so
+ * that PdnReader and other programs can read them back.
+ *
+ * Each game is written as its tags, one per line, followed by its moves and
+ * its result, with the lines of moves kept under 80 characters and an empty
+ * line after every game. The hops of a multi-jump are joined into a single
+ * move with all squares the piece lands on, such as 22x15x6. The glyph of an
+ * annotated move follows it directly, and its comment in braces.
+ *
+ * A writer can be shared by threads, such as those of a Tournament, as each
+ * game is written as a whole.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+public class PdnWriter implements Closeable, Flushable {
+
+    private static final int LINE_LENGTH = 79;
+
+    private final Writer out;
+    private final StringBuilder text = new StringBuilder(1024);
+    private int lineStart;
+
+    // create a writer of the given file, replacing it if it exists
+    public PdnWriter(Path file) throws IOException {
+        this(Files.newBufferedWriter(file, StandardCharsets.ISO_8859_1));
+    }
+
+    // create a writer to the given stream, which is closed with the writer
+    public PdnWriter(Writer out) {
+        this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out);
+    }
+
+    // writes the given game, replaying its moves if they were read and not yet checked
+    public synchronized void write(PdnGame game) throws IOException {
+        int[] hops = game.getHops();
+        int player = PositionCodec.player(game.getStart(), 0);
+        int moveNo = 1;
+        int noMoves = 0;
+
+        text.setLength(0);
+        for (Map.Entry<String, String> tag : game.getTags().entrySet()) {
+            tag(tag.getKey(), tag.getValue());
+        }
+        if (game.getTag(PdnGame.RESULT_TAG) == null) {
+            tag(PdnGame.RESULT_TAG, game.getResult());
+        }
+        text.append('\n');
+        lineStart = text.length();
+
+        for (int i = 0; i < hops.length; ) {
+            // White's moves are numbered, and so is the first move of the game
+            if (player == CheckersPiece.HUMAN_PLAYER) {
+                word(moveNo + ".");
+            } else if (i == 0) {
+                word(moveNo + "...");
+            }
+
+            int first = i;
+            String glyph = game.getGlyph(noMoves);
+            String comment = game.getComment(noMoves++);
+
+            i = PdnGame.moveEnd(hops, first);
+            word(glyph == null ? move(hops, first, i) : move(hops, first, i) + glyph);
+            if (comment != null) {
+                word("{" + comment.replace('}', ')') + "}");
+            }
+
+            if (player == CheckersPiece.COMPUTER_PLAYER) {
+                moveNo++;
+            }
+            player = (player + 1) % 2;
+        }
+
+        word(game.getResult());
+        text.append("\n\n");
+        out.append(text);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    // returns the move made up of the given hops in the notation
+    static String move(int[] hops, int from, int to) {
+        StringBuilder move = new StringBuilder();
+        char separator = CheckersMove.isCapture(hops[from]) ? 'x' : '-';
+
+        move.append(PdnGame.number(CheckersMove.source(hops[from])));
+        for (int i = from; i < to; i++) {
+            move.append(separator).append(PdnGame.number(CheckersMove.dest(hops[i])));
+        }
+        return move.toString();
+    }
+
+    // appends a word of the movetext, starting a new line if it does not fit on the current one
+    private void word(String word) {
+        if (text.length() > lineStart) {
+            if (text.length() - lineStart + 1 + word.length() > LINE_LENGTH) {
+                text.append('\n');
+                lineStart = text.length();
+            } else {
+                text.append(' ');
+            }
+        }
+        text.append(word);
+    }
+
+    // appends a tag, with the quotes and backslashes of its value escaped
+    private void tag(String name, String value) {
+        text.append('[').append(name).append(" \"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                text.append('\\');
+            }
+            text.append(c);
+        }
+        text.append("\"]\n");
+    }
+}
@@ -0,0 +1,477 @@
+/*
+ * Counts the positions reached by playing every valid sequence of moves of a
+ * given length (perft), to check the move generator and measure its speed.
+ *
+ * A move is a single step or a single capture, as in CheckersGame, so a
+ * multi-jump takes several moves, all by the same player. The player to move
+ * passes to the opponent once a move leaves no capture to continue with. A
+ * position in which the player to move has no valid move ends the game and
+ * has no children.
+ *
+ * At the last level of the tree the moves are counted, not made (bulk
+ * counting). Counts of whole subtrees can also be kept in a hash table, so
+ * that a position reached through different orders of moves is only counted
+ * once.
+ *
+ * In verify mode, every position of the tree is also checked against a
+ * reference move generator that scans the board square by square, the way
+ * CheckersGame used to before it used bitboards: the same moves must be
+ * valid, and making each of them must give the same position.
+ *
+ * Usage: java szymon.zielinski.boardgame.checkers.Perft [options] depth
+ *
+ * -moves S-D,... play the given moves from the start position first
+ * -divide        print the count of each move at the root
+ * -hash MB       keep counts of subtrees in a table of the given size
+ * -verify        check every position against the reference generator
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import szymon.zielinski.boardgame.base.Board;
+
+public class Perft {
+
+    private static final long DEPTH_KEY = 0x9E3779B97F4A7C15L;
+    private static final long CAPTURE_KEY = 0xC2B2AE3D27D4EB4FL;
+
+    private final CheckersGame game;
+    private int player;
+
+    // lists of moves, indexed by the distance from the root of the tree
+    private MoveList[] moveLists = new MoveList[0];
+
+    // counts of subtrees, indexed by the key of the position and the depth
+    private long[] hashKeys, hashCounts;
+    private int hashMask;
+
+    private boolean verify;
+    private long verifiedPositions;
+
+    // create a perft of the given game, with the given player to move
+    public Perft(CheckersGame game, int player) {
+        this.game = new CheckersGame(game);
+        this.player = player;
+    }
+
+    // keeps counts of subtrees in a table of the given size
+    public void setHashSize(int sizeInMb) {
+        int entries = Integer.highestOneBit(sizeInMb * 1024 * 1024 / 16);
+        hashKeys = new long[entries];
+        hashCounts = new long[entries];
+        hashMask = entries - 1;
+    }
+
+    // turns checking against the reference generator on or off
+    public void setVerify(boolean verify) {
+        this.verify = verify;
+    }
+
+    // returns the number of positions checked against the reference generator
+    public long getVerifiedPositions() {
+        return verifiedPositions;
+    }
+
+    // returns the number of positions reached after the given number of moves
+    public long perft(int depth) {
+        return perft(depth, 0);
+    }
+
+    /*
+     * Prints the number of positions reached through each move at the root,
+     * and returns their sum.
+     */
+    public long divide(int depth, PrintStream out) {
+        MoveList moves = movesAt(0);
+        long total = 0;
+
+        game.generateMoves(player, moves);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            long count = 1;
+
+            if (depth > 1) {
+                int mover = player;
+                makeMove(move);
+                count = perft(depth - 1, 1);
+                unmakeMove(mover);
+            }
+            out.println(CheckersMove.source(move) + "-" + CheckersMove.dest(move) + ": " + count);
+            total += count;
+        }
+        return total;
+    }
+
+    private long perft(int depth, int ply) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        MoveList moves = movesAt(ply);
+        int count = game.generateMoves(player, moves);
+
+        if (verify) {
+            verifyMoves(moves);
+        }
+
+        // count the last moves without making them
+        if (depth == 1 && !verify) {
+            return count;
+        }
+
+        long key = 0;
+        int index = 0;
+
+        if (hashKeys != null && depth > 1) {
+            // the same board with a capture pending has other moves
+            key = game.hashKey(player) ^ (DEPTH_KEY * depth)
+                    ^ (CAPTURE_KEY * (game.getConsecutiveSquare() + 1));
+            index = (int) (key ^ (key >>> 32)) & hashMask;
+
+            if (hashKeys[index] == key) {
+                return hashCounts[index];
+            }
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            int move = moves.get(i);
+            int mover = player;
+
+            if (verify) {
+                ReferenceBoard expected = new ReferenceBoard(game, player);
+                expected.makeMove(move);
+                makeMove(move);
+                expected.verify(game, player);
+            } else {
+                makeMove(move);
+            }
+
+            nodes += perft(depth - 1, ply + 1);
+            unmakeMove(mover);
+        }
+
+        if (hashKeys != null && depth > 1) {
+            hashKeys[index] = key;
+            hashCounts[index] = nodes;
+        }
+        return nodes;
+    }
+
+    // makes the move, passing the turn unless the piece can capture again
+    private void makeMove(int move) {
+        game.makeMove(move);
+        if (!game.canAttackAgain()) {
+            player = (player + 1) % 2;
+        }
+    }
+
+    // takes back the last move, made by the given player
+    private void unmakeMove(int mover) {
+        game.unmakeMove();
+        player = mover;
+    }
+
+    // returns the move list for the given level of the tree
+    private MoveList movesAt(int ply) {
+        if (ply == moveLists.length) {
+            moveLists = Arrays.copyOf(moveLists, ply * 2 + 8);
+        }
+        if (moveLists[ply] == null) {
+            moveLists[ply] = new MoveList();
+        }
+        return moveLists[ply];
+    }
+
+    // checks that the moves are those the reference generator finds
+    private void verifyMoves(MoveList moves) {
+        int[] found = new int[moves.size()];
+
+        for (int i = 0; i < found.length; i++) {
+            found[i] = CheckersMove.source(moves.get(i)) * CheckersGame.BOARD_SIZE
+                    + CheckersMove.dest(moves.get(i));
+        }
+        Arrays.sort(found);
+
+        int[] expected = new ReferenceBoard(game, player).listAllMoves();
+        if (!Arrays.equals(found, expected)) {
+            throw new IllegalStateException("Moves differ from the reference: " + Arrays.toString(found)
+                    + " instead of " + Arrays.toString(expected) + "\n" + new ReferenceBoard(game, player));
+        }
+        verifiedPositions++;
+    }
+
+    /*
+     * A copy of a position on a plain array of squares, with the move rules
+     * CheckersGame used before it used bitboards. A capture that coronates a
+     * checker ends the turn, as in the GUI.
+     */
+    private static class ReferenceBoard {
+
+        private final int[] owner = new int[CheckersGame.BOARD_SIZE];
+        private final int[] type = new int[CheckersGame.BOARD_SIZE];
+        private int consecutiveAttack;
+        private int player;
+
+        ReferenceBoard(CheckersGame game, int player) {
+            for (int i = 0; i < CheckersGame.BOARD_SIZE; i++) {
+                owner[i] = game.getOwnerAt(i);
+                type[i] = game.getTypeAt(i);
+            }
+            consecutiveAttack = game.getConsecutiveSquare();
+            this.player = player;
+        }
+
+        // return the owner of the piece at the given position
+        private int ownerAt(int square) {
+            if (square < 0 || square >= CheckersGame.BOARD_SIZE) {
+                return Board.INPUT_ERROR;
+            }
+            return owner[square];
+        }
+
+        // lists all valid moves as source * BOARD_SIZE + dest, in ascending order
+        int[] listAllMoves() {
+            MoveList moves = new MoveList();
+
+            if (consecutiveAttack != -1) {
+                listCaptures(consecutiveAttack, moves);
+            } else {
+                for (int i = 0; i < CheckersGame.BOARD_SIZE; i++) {
+                    listCaptures(i, moves);
+                }
+                if (moves.isEmpty()) {
+                    for (int i = 0; i < CheckersGame.BOARD_SIZE; i++) {
+                        int posMove[] = {i + 9, i - 9, i + 7, i - 7};
+
+                        for (int j = 0; j < posMove.length; j++) {
+                            if (validMove(i, posMove[j])) {
+                                moves.add(i * CheckersGame.BOARD_SIZE + posMove[j]);
+                            }
+                        }
+                    }
+                }
+            }
+
+            int[] result = new int[moves.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = moves.get(i);
+            }
+            Arrays.sort(result);
+            return result;
+        }
+
+        // adds the captures of the piece on the given square to the list
+        private void listCaptures(int square, MoveList moves) {
+            int posAttack[] = {square + 18, square - 18, square + 14, square - 14};
+
+            for (int j = 0; j < posAttack.length; j++) {
+                if (validCapture(square, posAttack[j])) {
+                    moves.add(square * CheckersGame.BOARD_SIZE + posAttack[j]);
+                }
+            }
+        }
+
+        // checks if the given capture is valid
+        private boolean validCapture(int source, int dest) {
+            if (ownerAt(source) != player || ownerAt(dest) != Board.EMPTY_SQUARE) {
+                return false;
+            }
+            if (type[source] == CheckersPiece.CHECKER && player == CheckersPiece.HUMAN_PLAYER) {
+                return source - dest > 10 && validAttackUp(source, dest);
+            }
+            if (type[source] == CheckersPiece.CHECKER && player == CheckersPiece.COMPUTER_PLAYER) {
+                return dest - source > 10 && validAttackDown(source, dest);
+            }
+            return Math.abs(source - dest) > 10
+                    && (validAttackDown(source, dest) || validAttackUp(source, dest));
+        }
+
+        // checks if the given non-capturing move is valid
+        private boolean validMove(int source, int dest) {
+            if (ownerAt(source) != player || ownerAt(dest) != Board.EMPTY_SQUARE) {
+                return false;
+            }
+            if (type[source] == CheckersPiece.CHECKER && player == CheckersPiece.HUMAN_PLAYER) {
+                return source - dest < 10 && validMoveUp(source, dest);
+            }
+            if (type[source] == CheckersPiece.CHECKER && player == CheckersPiece.COMPUTER_PLAYER) {
+                return dest - source < 10 && validMoveDown(source, dest);
+            }
+            return Math.abs(source - dest) < 10
+                    && (validMoveDown(source, dest) || validMoveUp(source, dest));
+        }
+
+        // checks if the given move upwards on the board is valid
+        private boolean validMoveUp(int source, int dest) {
+            int difference = source - dest;
+
+            if (source % 8 == 0) {
+                return difference == 7;
+            }
+            if (source % 8 == 7) {
+                return difference == 9;
+            }
+            return difference == 7 || difference == 9;
+        }
+
+        // checks if the given move downwards on the board is valid
+        private boolean validMoveDown(int source, int dest) {
+            int difference = dest - source;
+
+            if (source % 8 == 0) {
+                return difference == 9;
+            }
+            if (source % 8 == 7) {
+                return difference == 7;
+            }
+            return difference == 7 || difference == 9;
+        }
+
+        // checks if the capturing move upwards is valid
+        private boolean validAttackUp(int source, int dest) {
+            int difference = source - dest;
+            int middle = ownerAt((source + dest) / 2);
+
+            if (middle == player || middle == Board.EMPTY_SQUARE) {
+                return false;
+            }
+            if (source % 8 == 0 || source % 8 == 1) {
+                return difference == 14;
+            }
+            if (source % 8 == 7 || source % 8 == 6) {
+                return difference == 18;
+            }
+            return difference == 14 || difference == 18;
+        }
+
+        // checks if the capturing move downwards is valid
+        private boolean validAttackDown(int source, int dest) {
+            int difference = dest - source;
+            int middle = ownerAt((source + dest) / 2);
+
+            if (middle == player || middle == Board.EMPTY_SQUARE) {
+                return false;
+            }
+            if (source % 8 == 0 || source % 8 == 1) {
+                return difference == 18;
+            }
+            if (source % 8 == 7 || source % 8 == 6) {
+                return difference == 14;
+            }
+            return difference == 14 || difference == 18;
+        }
+
+        // carries out the move, as movePiece and the GUI used to
+        void makeMove(int move) {
+            int source = CheckersMove.source(move);
+            int dest = CheckersMove.dest(move);
+            boolean gotCoronated = false;
+
+            owner[dest] = owner[source];
+            type[dest] = type[source];
+            owner[source] = Board.EMPTY_SQUARE;
+            type[source] = Board.EMPTY_SQUARE;
+
+            if (type[dest] == CheckersPiece.CHECKER
+                    && ((dest < 8 && player == CheckersPiece.HUMAN_PLAYER)
+                    || (dest > 55 && player == CheckersPiece.COMPUTER_PLAYER))) {
+                type[dest] = CheckersPiece.KING;
+                gotCoronated = true;
+            }
+
+            consecutiveAttack = -1;
+            if (Math.abs(source - dest) > 10) {
+                owner[(source + dest) / 2] = Board.EMPTY_SQUARE;
+                type[(source + dest) / 2] = Board.EMPTY_SQUARE;
+
+                MoveList again = new MoveList();
+                listCaptures(dest, again);
+                if (!again.isEmpty() && !gotCoronated) {
+                    consecutiveAttack = dest;
+                }
+            }
+            if (consecutiveAttack == -1) {
+                player = (player + 1) % 2;
+            }
+        }
+
+        // checks that the game holds this position, with the given player to move
+        void verify(CheckersGame game, int gamePlayer) {
+            ReferenceBoard actual = new ReferenceBoard(game, gamePlayer);
+
+            if (!Arrays.equals(owner, actual.owner) || !Arrays.equals(type, actual.type)
+                    || consecutiveAttack != actual.consecutiveAttack || player != actual.player) {
+                throw new IllegalStateException("Position differs from the reference:\n"
+                        + actual + "instead of\n" + this);
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+
+            for (int i = 0; i < CheckersGame.BOARD_SIZE; i++) {
+                char piece = '.';
+                if (owner[i] != Board.EMPTY_SQUARE) {
+                    piece = owner[i] == CheckersPiece.HUMAN_PLAYER ? 'h' : 'c';
+                    if (type[i] == CheckersPiece.KING) {
+                        piece = Character.toUpperCase(piece);
+                    }
+                }
+                text.append(piece).append(i % 8 == 7 ? "\n" : " ");
+            }
+            return text.append("player ").append(player).append(", capturing again from ")
+                    .append(consecutiveAttack).append('\n').toString();
+        }
+    }
+
+    public static void main(String[] args) {
+        CheckersGame game = new CheckersGame();
+        int player = CheckersPiece.HUMAN_PLAYER;
+        boolean divide = false, verify = false;
+        int hash = 0, depth = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-moves") && i + 1 < args.length) {
+                for (String move : args[++i].split(",")) {
+                    String[] squares = move.split("-");
+                    if (!game.movePiece(Integer.parseInt(squares[0].trim()), Integer.parseInt(squares[1].trim()), player)) {
+                        throw new IllegalArgumentException("Invalid move: " + move);
+                    }
+                    if (!game.canAttackAgain()) {
+                        player = (player + 1) % 2;
+                    }
+                }
+            } else if (args[i].equals("-divide")) {
+                divide = true;
+            } else if (args[i].equals("-verify")) {
+                verify = true;
+            } else if (args[i].equals("-hash") && i + 1 < args.length) {
+                hash = Integer.parseInt(args[++i]);
+            } else {
+                depth = Integer.parseInt(args[i]);
+            }
+        }
+
+        Perft perft = new Perft(game, player);
+        if (hash > 0) {
+            perft.setHashSize(hash);
+        }
+        perft.setVerify(verify);
+
+        for (int d = divide ? depth : 1; d <= depth; d++) {
+            long start = System.nanoTime();
+            long nodes = divide ? perft.divide(d, System.out) : perft.perft(d);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.println(String.format(java.util.Locale.ROOT, "perft(%d) = %d  %.3f s  %.0f nodes/s",
+                    d, nodes, seconds, nodes / Math.max(seconds, 1e-9)));
+        }
+        if (verify) {
+            System.out.println(perft.getVerifiedPositions() + " positions match the reference generator");
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Encodes the full state of a game, the pieces, the kings, the player to move
+ * and the piece that has to capture again if any, in two longs, and in a text
+ * notation like the FEN tags of Portable Draughts Notation.
+ *
+ * The two longs are laid out as follows, with the sets of pieces as in
+ * BitboardPosition:
+ *
+ * first word,  bits  0 - 31: human pieces
+ *              bits 32 - 63: computer pieces
+ * second word, bits  0 - 31: kings
+ *              bit       32: player to move
+ *              bits 33 - 38: bit of the piece that has to capture again, plus
+ *                            one, or 0 if none
+ *
+ * The other bits are 0, so that every state has exactly one encoding, and
+ * equal states have equal words.
+ *
+ * In the text notation, the human player is White and the computer is Black,
+ * and the dark squares are numbered from 1 to 32 as the bits of
+ * BitboardPosition plus one: 1 to 4 on the top row, where the computer
+ * starts, down to 29 to 32 on the bottom row. The notation is made up of
+ * fields separated by colons: the player to move, then the pieces of each
+ * player, a colour followed by a list of squares separated by commas, with K
+ * in front of the square of a king, and a range a-b for all squares from a to
+ * b. The piece that has to capture again, if any, follows in a last field,
+ * after a J. The start position with the human player to move is
+ *
+ * W:W21-32:B1-12
+ *
+ * Both ways of encoding work on primitive values and reused buffers, so that
+ * millions of positions can be stored or sent without creating an object for
+ * each.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+public final class PositionCodec {
+
+    // the number of longs taken by an encoded state
+    public static final int WORDS = 2;
+
+    private static final long SET_MASK = 0xFFFFFFFFL;
+    private static final int PLAYER_SHIFT = 32;
+    private static final int CAPTURE_SHIFT = 33;
+    private static final int CAPTURE_MASK = 0x3F;
+    private static final long STATE_MASK = (1L << 39) - 1;
+
+    private PositionCodec() {
+    }
+
+    /*
+     * Encodes the state of the game with the given player to move into the
+     * array, starting at the given offset.
+     */
+    public static void encode(CheckersGame game, int player, long[] words, int offset) {
+        BitboardPosition position = game.getPosition();
+        int square = game.getConsecutiveSquare();
+
+        words[offset] = position.pieces(CheckersPiece.HUMAN_PLAYER) & SET_MASK
+                | (long) position.pieces(CheckersPiece.COMPUTER_PLAYER) << 32;
+        words[offset + 1] = position.kings() & SET_MASK | (long) player << PLAYER_SHIFT
+                | (long) (square < 0 ? 0 : BitboardPosition.bit(square) + 1) << CAPTURE_SHIFT;
+    }
+
+    // returns the encoded state of the game with the given player to move
+    public static long[] encode(CheckersGame game, int player) {
+        long[] words = new long[WORDS];
+        encode(game, player, words, 0);
+        return words;
+    }
+
+    // returns a new game in the state encoded at the given offset of the array
+    public static CheckersGame decode(long[] words, int offset) {
+        CheckersGame game = new CheckersGame();
+        decode(words, offset, game);
+        return game;
+    }
+
+    /*
+     * Sets up the given game in the state encoded at the given offset of the
+     * array. The moves made in the game so far can no longer be taken back.
+     * The player to move is returned by player().
+     */
+    public static void decode(long[] words, int offset, CheckersGame game) {
+        long pieces = words[offset];
+        long state = words[offset + 1];
+        int human = (int) pieces;
+        int computer = (int) (pieces >>> 32);
+        int kings = (int) state;
+        int player = player(words, offset);
+        int capture = (int) (state >>> CAPTURE_SHIFT) & CAPTURE_MASK;
+
+        if ((state & ~STATE_MASK) != 0 || capture > BitboardPosition.SQUARES) {
+            throw new IllegalArgumentException("Not an encoded position: " + Long.toHexString(state));
+        }
+        validate(human, computer, kings, player, capture - 1);
+
+        game.setPieces(human, computer, kings);
+        if (capture > 0) {
+            game.setConsecutiveSquare(BitboardPosition.square(capture - 1));
+        }
+    }
+
+    // returns the player to move of the state encoded at the given offset of the array
+    public static int player(long[] words, int offset) {
+        return (int) (words[offset + 1] >>> PLAYER_SHIFT) & 1;
+    }
+
+    // returns the game with the given player to move in the text notation
+    public static String format(CheckersGame game, int player) {
+        long[] words = encode(game, player);
+        return format(words, 0, new StringBuilder(96)).toString();
+    }
+
+    // appends the state encoded at the given offset of the array to the builder, in the text notation
+    public static StringBuilder format(long[] words, int offset, StringBuilder out) {
+        long state = words[offset + 1];
+        int kings = (int) state;
+        int capture = (int) (state >>> CAPTURE_SHIFT) & CAPTURE_MASK;
+
+        out.append(player(words, offset) == CheckersPiece.HUMAN_PLAYER ? 'W' : 'B');
+        out.append(":W");
+        formatSquares((int) words[offset], kings, out);
+        out.append(":B");
+        formatSquares((int) (words[offset] >>> 32), kings, out);
+
+        if (capture > 0) {
+            out.append(":J").append(capture);
+        }
+        return out;
+    }
+
+    // appends the numbers of the squares of the pieces, in order, with K in front of the kings
+    private static void formatSquares(int pieces, int kings, StringBuilder out) {
+        boolean first = true;
+
+        while (pieces != 0) {
+            int bit = Integer.numberOfTrailingZeros(pieces);
+            int piece = 1 << bit;
+            int last = bit;
+
+            // a run of three or more checkers, or of three or more kings, is written as a range
+            while (last + 1 < BitboardPosition.SQUARES && (pieces & (1 << (last + 1))) != 0
+                    && ((kings & (1 << (last + 1))) != 0) == ((kings & piece) != 0)) {
+                last++;
+            }
+            if (last - bit < 2) {
+                last = bit;
+            }
+
+            if (!first) {
+                out.append(',');
+            }
+            if ((kings & piece) != 0) {
+                out.append('K');
+            }
+            out.append(bit + 1);
+            if (last > bit) {
+                out.append('-').append(last + 1);
+            }
+
+            pieces &= ~(int) ((1L << (last + 1)) - (1L << bit));
+            first = false;
+        }
+    }
+
+    // returns a new game in the state given in the text notation
+    public static CheckersGame parse(CharSequence text) {
+        long[] words = new long[WORDS];
+        parse(text, words, 0);
+        return decode(words, 0);
+    }
+
+    /*
+     * Encodes the state given in the text notation into the array, starting
+     * at the given offset. Spaces are ignored, and the fields of the players
+     * may come in either order.
+     */
+    public static void parse(CharSequence text, long[] words, int offset) {
+        Parser parser = new Parser(text);
+        int[] pieces = new int[2];
+        int kings = 0;
+        int capture = 0;
+
+        int player = parser.colour();
+        int lastOwner = -1;
+        for (int i = 0; i < 2; i++) {
+            parser.expect(':');
+            int owner = parser.colour();
+            if (owner == lastOwner) {
+                throw parser.error("the pieces of a player are listed twice");
+            }
+            lastOwner = owner;
+
+            // a list of squares or ranges, each with an optional K, possibly empty
+            boolean more = parser.peek() != ':' && parser.peek() != -1;
+            while (more) {
+                boolean king = parser.peek() == 'K';
+                if (king) {
+                    parser.next();
+                }
+
+                int first = parser.square();
+                int last = first;
+                if (parser.peek() == '-') {
+                    parser.next();
+                    last = parser.square();
+                    if (last < first) {
+                        throw parser.error("range " + (first + 1) + "-" + (last + 1) + " is reversed");
+                    }
+                }
+
+                for (int bit = first; bit <= last; bit++) {
+                    if (((pieces[0] | pieces[1]) & (1 << bit)) != 0) {
+                        throw parser.error("square " + (bit + 1) + " is taken twice");
+                    }
+                    pieces[owner] |= 1 << bit;
+                    kings |= king ? 1 << bit : 0;
+                }
+
+                more = parser.peek() == ',';
+                if (more) {
+                    parser.next();
+                }
+            }
+        }
+
+        if (parser.peek() == ':') {
+            parser.next();
+            parser.expect('J');
+            capture = parser.square() + 1;
+        }
+        if (parser.peek() != -1) {
+            throw parser.error("unexpected '" + (char) parser.peek() + "'");
+        }
+
+        try {
+            validate(pieces[CheckersPiece.HUMAN_PLAYER], pieces[CheckersPiece.COMPUTER_PLAYER], kings, player, capture - 1);
+        } catch (IllegalArgumentException e) {
+            throw parser.error(e.getMessage());
+        }
+
+        words[offset] = pieces[CheckersPiece.HUMAN_PLAYER] & SET_MASK
+                | (long) pieces[CheckersPiece.COMPUTER_PLAYER] << 32;
+        words[offset + 1] = kings & SET_MASK | (long) player << PLAYER_SHIFT | (long) capture << CAPTURE_SHIFT;
+    }
+
+    /*
+     * Checks that the pieces make up a position a game can reach: no two
+     * pieces on a square, no king without a piece, no checker on the row on
+     * which it would have been coronated, and a piece of the player to move
+     * able to capture on the square of the capture pending, if any.
+     */
+    private static void validate(int human, int computer, int kings, int player, int captureBit) {
+        if ((human & computer) != 0 || (kings & ~(human | computer)) != 0) {
+            throw new IllegalArgumentException("Pieces overlap");
+        }
+        if ((human & ~kings & BitboardPosition.TOP_ROW) != 0
+                || (computer & ~kings & BitboardPosition.BOTTOM_ROW) != 0) {
+            throw new IllegalArgumentException("Checker on the row it is coronated on");
+        }
+        if (captureBit >= 0) {
+            BitboardPosition position = new BitboardPosition();
+            position.set(human, computer, kings);
+
+            if ((position.jumpers(player) & (1 << captureBit)) == 0) {
+                throw new IllegalArgumentException("No piece to capture again on square " + (captureBit + 1));
+            }
+        }
+    }
+
+    // reads the text notation one character at a time, skipping spaces
+    private static class Parser {
+
+        private final CharSequence text;
+        private int index;
+
+        Parser(CharSequence text) {
+            this.text = text;
+        }
+
+        // returns the next character without reading it, or -1 at the end
+        int peek() {
+            while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+                index++;
+            }
+            return index < text.length() ? text.charAt(index) : -1;
+        }
+
+        // reads the next character
+        int next() {
+            int c = peek();
+            index++;
+            return c;
+        }
+
+        // reads the given character
+        void expect(char c) {
+            if (next() != c) {
+                throw error("expected '" + c + "'");
+            }
+        }
+
+        // reads a colour and returns the player it stands for
+        int colour() {
+            int c = next();
+            if (c == 'W') {
+                return CheckersPiece.HUMAN_PLAYER;
+            } else if (c == 'B') {
+                return CheckersPiece.COMPUTER_PLAYER;
+            }
+            throw error("expected 'W' or 'B'");
+        }
+
+        // reads the number of a square and returns its bit
+        int square() {
+            int number = 0;
+            int digits = 0;
+
+            while (peek() >= '0' && peek() <= '9' && digits < 3) {
+                number = number * 10 + next() - '0';
+                digits++;
+            }
+            if (digits == 0 || number < 1 || number > BitboardPosition.SQUARES) {
+                throw error("expected a square from 1 to " + BitboardPosition.SQUARES);
+            }
+            return number - 1;
+        }
+
+        // returns an exception for an error at the current character
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid position at " + index + " of \"" + text + "\": " + message);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+/*
+ * Interface for objects that follow the progress of an AI search. Used by
+ * CheckersSearch, which may call it from a background thread.
+*/
+package szymon.zielinski.boardgame.checkers;
+
+public interface SearchListener {
+    // called with the result of each completed iteration of the search
+    public void searchProgress(SearchResult progress);
+}
@@ -0,0 +1,103 @@
+/*
+ * The outcome of an AI search: the best move found, the line of play expected
+ * to follow it, its score and how much work it took to find it. The score is
+ * given from the computer's point of view, as returned by the evaluation
+ * function.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+public class SearchResult {
+
+    private final int move;
+    private final double score;
+    private final int depth;
+    private final int[] principalVariation;
+    private final long nodes;
+    private final long quiescenceNodes;
+    private final long cutoffs;
+    private final long firstMoveCutoffs;
+
+    SearchResult(int move, double score, int depth, long nodes) {
+        this(move, score, depth, move == CheckersMove.NONE ? new int[0] : new int[] { move }, nodes, 0, 0, 0);
+    }
+
+    SearchResult(int move, double score, int depth, int[] principalVariation, long nodes,
+            long quiescenceNodes, long cutoffs, long firstMoveCutoffs) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.principalVariation = principalVariation.clone();
+        this.nodes = nodes;
+        this.quiescenceNodes = quiescenceNodes;
+        this.cutoffs = cutoffs;
+        this.firstMoveCutoffs = firstMoveCutoffs;
+    }
+
+    // returns the best move, encoded by CheckersMove
+    public int getMove() {
+        return move;
+    }
+
+    // returns the score of the best move
+    public double getScore() {
+        return score;
+    }
+
+    // returns the depth of the last completed search, 0 if none completed
+    public int getDepth() {
+        return depth;
+    }
+
+    /*
+     * Returns the best line of play found, starting with the best move: the
+     * moves both players are expected to make, each jump of a multiple capture
+     * being a move of its own. The line may end before the depth of the
+     * search, where a stored result cut the search short.
+     */
+    public int[] getPrincipalVariation() {
+        return principalVariation.clone();
+    }
+
+    // returns the number of positions searched, including those of the quiescence search
+    public long getNodes() {
+        return nodes;
+    }
+
+    // returns the number of positions searched beyond the depth limit, to settle captures
+    public long getQuiescenceNodes() {
+        return quiescenceNodes;
+    }
+
+    // returns the number of positions whose search was cut off by alpha-beta pruning
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    // returns the number of those cutoffs caused by the first move searched
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    // returns the share of the cutoffs caused by the first move, a measure of the move ordering
+    public double getFirstMoveCutoffRate() {
+        return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    @Override
+    public String toString() {
+        return "move " + CheckersMove.toString(move) + "score " + score
+                + " depth " + depth + " nodes " + nodes + " qnodes " + quiescenceNodes
+                + " cutoffs " + cutoffs + " first " + firstMoveCutoffs + " pv " + variationToString();
+    }
+
+    // lists the moves of the principal variation, separated by spaces
+    private String variationToString() {
+        StringBuilder builder = new StringBuilder();
+
+        for (int move : principalVariation) {
+            builder.append(builder.length() == 0 ? "" : " ")
+                    .append(CheckersMove.source(move)).append('-').append(CheckersMove.dest(move));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,505 @@
+/*
+ * Runs AI searches for many games at once on a fixed pool of threads, so
+ * that a few long searches cannot hold up the short ones, as in
+ * CheckersServer where a hard AI would otherwise keep everyone else's easy AI
+ * waiting.
+ *
+ * Every search is submitted with a priority and a deadline. Searches wait in
+ * order of priority, the higher first, then of deadline, the earlier first.
+ * A search gains a level of priority for every 100 ms it waits, so that a
+ * steady stream of searches of a higher priority only holds it up for a
+ * while. No more searches run at once than there are processors (slots),
+ * however many threads the pool has, so the threads beyond the slots only
+ * hold searches that were paused. The last idle thread is kept for a search of a
+ * higher priority than all those started, so that long searches cannot take
+ * up all threads and keep the short ones from starting.
+ *
+ * The searches share the processors in time slices. A search runs the
+ * checkpoint it is given every 1024 positions (see
+ * CheckersGame.setSearchCheckpoint). There it gives up its slot as soon as a
+ * search of a higher priority is waiting, or once its slice is over if one
+ * of the same priority is waiting, and then waits for its turn like any
+ * other. A search keeps its deadline while it waits, and ends at it with the
+ * deepest iteration it completed: a paused search whose deadline has passed
+ * gets the next free slot before any other, and is not paused again, so that
+ * it ends at its next checkpoint.
+ *
+ * When the scheduler is overloaded, it sheds and degrades work rather than
+ * let the waits grow without bound: a search is rejected when it is
+ * submitted to a full queue, and dropped if its deadline passes before it
+ * starts. A search that starts while many others wait searches less deeply,
+ * one move less for every four searches per slot waiting, down to one move.
+ *
+ * The scheduler counts the searches it was given and what became of them,
+ * and keeps a histogram of the time they waited before they started, from
+ * which percentiles of the wait are read.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class SearchScheduler implements Closeable {
+
+    // the time a search runs before it lets a waiting search of the same priority have its slot
+    public static final Duration DEFAULT_SLICE = Duration.ofMillis(5);
+
+    // a waiting search gains one level of priority for every this many nanoseconds it waits
+    private static final long AGING_NANOS = 100000000L;
+
+    // a search loses one move of depth for every this many searches per slot waiting when it starts
+    private static final int DEGRADE_STEP = 4;
+
+    // the number of buckets of the histogram of wait times: four per power of two of microseconds
+    private static final int BUCKETS = 248;
+
+    /*
+     * The work of a search: searches to at most maxDepth moves, until the
+     * given System.nanoTime() at the latest (Long.MAX_VALUE for no limit),
+     * running the checkpoint as CheckersGame.setSearchCheckpoint describes.
+     */
+    @FunctionalInterface
+    public interface Search<T> {
+        T run(int maxDepth, long deadline, Runnable checkpoint) throws Exception;
+    }
+
+    private final int slots;
+    private final int queueSize;
+    private final long sliceNanos;
+    private final List<Thread> workers = new ArrayList<Thread>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition handedOut = lock.newCondition();
+
+    // the searches not yet started, those paused, and those started but not yet taken by a thread
+    private final List<Request<?>> waiting = new ArrayList<Request<?>>();
+    private final List<Request<?>> paused = new ArrayList<Request<?>>();
+    private final Deque<Request<?>> handOff = new ArrayDeque<Request<?>>();
+
+    // the number of searches started and not yet completed, by priority
+    private final TreeMap<Integer, Integer> active = new TreeMap<Integer, Integer>();
+
+    private int freeSlots, idleWorkers;
+    private long sequence;
+    private boolean closed;
+
+    // the priority of the best search that could take a slot when last dispatched, read by the checkpoints without the lock
+    private volatile int waitingPriority = Integer.MIN_VALUE;
+
+    // what became of the searches, and how long they waited to start
+    private long submitted, rejected, shed, started, degraded, pauses, completed;
+    private long totalWait, maxWait;
+    private final long[] waits = new long[BUCKETS];
+
+    /*
+     * Create a scheduler that runs up to slots searches at once on the given
+     * number of threads, with up to queueSize more waiting to start, in
+     * slices of the given length.
+     */
+    public SearchScheduler(int slots, int threads, int queueSize, Duration slice) {
+        if (slots < 1 || threads < slots) {
+            throw new IllegalArgumentException("Illegal number of slots or threads: " + slots + ", " + threads);
+        }
+        this.slots = slots;
+        this.queueSize = Math.max(1, queueSize);
+        this.sliceNanos = slice.toNanos();
+        this.freeSlots = slots;
+
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(this::work, "Checkers AI " + (i + 1));
+            thread.setDaemon(true);
+            workers.add(thread);
+            thread.start();
+        }
+    }
+
+    /*
+     * Submits a search of the given depth and priority, which must end by the
+     * given time from now (null for no limit). The Future ends with a
+     * RejectedExecutionException if the deadline passed before the search
+     * started. Cancelling the Future interrupts the search, which then ends at
+     * its next checkpoint. Throws RejectedExecutionException if the queue is
+     * full or the scheduler is closed.
+     */
+    public <T> Future<T> submit(int priority, int depth, Duration deadline, Search<T> search) {
+        long now = System.nanoTime();
+        Request<T> request = new Request<T>(priority, depth,
+                deadline == null ? Long.MAX_VALUE : now + deadline.toNanos(), now, search);
+
+        lock.lock();
+        try {
+            submitted++;
+            if (closed || waiting.size() >= queueSize) {
+                rejected++;
+                throw new RejectedExecutionException(closed ? "closed" : "busy");
+            }
+            request.sequence = sequence++;
+            waiting.add(request);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+        return request.future;
+    }
+
+    // returns the number of searches waiting to start
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // returns the number of searches started and not yet completed, running or paused
+    public int getActive() {
+        lock.lock();
+        try {
+            return (int) (started - completed);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Returns the time that the given share of the searches, such as 0.99,
+     * waited for at most before they started, to within a quarter, or
+     * Duration.ZERO if none has started.
+     */
+    public Duration getWaitTime(double quantile) {
+        lock.lock();
+        try {
+            long rank = (long) Math.ceil(quantile * started);
+            long count = 0;
+
+            for (int i = 0; i < BUCKETS && rank > 0; i++) {
+                count += waits[i];
+                if (count >= rank) {
+                    return Duration.ofNanos(Math.min(upperBound(i), maxWait) * 1000);
+                }
+            }
+            return Duration.ZERO;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // returns the longest time a search waited before it started
+    public Duration getMaxWaitTime() {
+        lock.lock();
+        try {
+            return Duration.ofNanos(maxWait * 1000);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // returns the counters and the wait times in one line, as name=value pairs
+    public String getStatistics() {
+        lock.lock();
+        try {
+            double meanWait = started == 0 ? 0 : totalWait / (double) started / 1000;
+            return String.format(Locale.ROOT,
+                    "queued=%d active=%d submitted=%d rejected=%d shed=%d started=%d degraded=%d"
+                            + " pauses=%d completed=%d wait.mean=%.1fms wait.p50=%.1fms wait.p99=%.1fms"
+                            + " wait.max=%.1fms",
+                    waiting.size(), started - completed, submitted, rejected, shed, started, degraded, pauses,
+                    completed, meanWait, millis(getWaitTime(0.5)), millis(getWaitTime(0.99)),
+                    maxWait / 1000.0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // stops the threads, interrupting the searches, and cancels the searches that did not start
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (Request<?> request : waiting) {
+                request.future.cancel(false);
+            }
+            waiting.clear();
+            handedOut.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    // runs the searches handed out to this thread until the scheduler is closed
+    private void work() {
+        while (true) {
+            Request<?> request;
+
+            lock.lock();
+            try {
+                idleWorkers++;
+                dispatch();
+                while (handOff.isEmpty()) {
+                    if (closed) {
+                        idleWorkers--;
+                        return;
+                    }
+                    handedOut.awaitUninterruptibly();
+                }
+                request = handOff.poll();
+            } finally {
+                lock.unlock();
+            }
+
+            // a search interrupted while it was cancelled must not end the next one
+            Thread.interrupted();
+            request.sliceStart = System.nanoTime();
+            request.future.run();
+            Thread.interrupted();
+
+            lock.lock();
+            try {
+                freeSlots++;
+                completed++;
+                active.merge(request.priority, -1, (count, change) -> count == 1 ? null : count + change);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /*
+     * Hands the free slots to the best searches that can take them, with the
+     * lock held: paused searches, and searches waiting to start as long as a
+     * thread is idle to run them. Waiting searches whose deadline has passed
+     * are dropped first.
+     */
+    private void dispatch() {
+        long now = System.nanoTime();
+
+        for (int i = waiting.size() - 1; i >= 0; i--) {
+            Request<?> request = waiting.get(i);
+            if (request.deadline - now < 0) {
+                waiting.remove(i);
+                shed++;
+                request.shed = true;
+                request.future.run();
+            }
+        }
+
+        Request<?> next;
+        while (freeSlots > 0 && (next = next(now)) != null) {
+            next.running = next.rank(now);
+            if (next.started) {
+                paused.remove(next);
+                next.resumed = true;
+                next.turn.signal();
+            } else {
+                waiting.remove(next);
+                start(next, now);
+                idleWorkers--;
+                handOff.add(next);
+                handedOut.signal();
+            }
+            freeSlots--;
+        }
+
+        next = next(now);
+        waitingPriority = next == null ? Integer.MIN_VALUE : next.rank(now);
+    }
+
+    /*
+     * Returns the search that should have the next free slot, with the lock
+     * held: the one of the highest priority, with the time it waited, among
+     * the paused ones and those waiting to start that a thread is left for,
+     * or null if there is none.
+     */
+    private Request<?> next(long now) {
+        Request<?> best = null;
+
+        for (Request<?> request : paused) {
+            if (best == null || request.before(best, now)) {
+                best = request;
+            }
+        }
+        for (Request<?> request : waiting) {
+            if ((best == null || request.before(best, now)) && startable(request) != null) {
+                best = request;
+            }
+        }
+        return best;
+    }
+
+    // returns the given search if a thread is left to start it on, or else null, with the lock held
+    private Request<?> startable(Request<?> request) {
+        if (request == null || idleWorkers == 0) {
+            return null;
+        }
+        if (idleWorkers > 1 || active.isEmpty() || request.priority > active.lastKey()) {
+            return request;
+        }
+        return null;
+    }
+
+    // records the wait of a search that starts, and the depth it may search to, with the lock held
+    private void start(Request<?> request, long now) {
+        long wait = (now - request.submitted) / 1000;
+        int reduction = waiting.size() / (DEGRADE_STEP * slots);
+
+        started++;
+        request.started = true;
+        active.merge(request.priority, 1, Integer::sum);
+        totalWait += wait;
+        maxWait = Math.max(maxWait, wait);
+        waits[bucket(wait)]++;
+
+        request.maxDepth = request.depth;
+        if (reduction > 0 && request.depth > 1) {
+            request.maxDepth = Math.max(1, request.depth - reduction);
+            degraded++;
+        }
+    }
+
+    // returns the bucket of the histogram of the given time in microseconds
+    private static int bucket(long micros) {
+        if (micros < 4) {
+            return (int) micros;
+        }
+        int log = 63 - Long.numberOfLeadingZeros(micros);
+        return (log - 1) * 4 + (int) (micros >>> (log - 2)) - 4;
+    }
+
+    // returns the longest time in microseconds that falls in the given bucket
+    private static long upperBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int log = bucket / 4 + 1;
+        return ((long) (bucket % 4 + 5) << (log - 2)) - 1;
+    }
+
+    private static double millis(Duration duration) {
+        return duration.toNanos() / 1e6;
+    }
+
+    // a submitted search, with its place in the queue
+    private class Request<T> implements Callable<T> {
+
+        final int priority;
+        final int depth;
+        final long deadline;
+        final long submitted;
+        final Search<T> search;
+        final FutureTask<T> future;
+        final Condition turn = lock.newCondition();
+
+        long sequence;
+        int maxDepth;
+        boolean started;
+        boolean shed;
+        boolean resumed;
+        long sliceStart;
+
+        // when the search was submitted or last paused, and the priority it gained by then
+        long queued;
+        int running;
+
+        Request(int priority, int depth, long deadline, long submitted, Search<T> search) {
+            this.priority = priority;
+            this.depth = depth;
+            this.deadline = deadline;
+            this.submitted = submitted;
+            this.queued = submitted;
+            this.search = search;
+            this.future = new FutureTask<T>(this);
+        }
+
+        @Override
+        public T call() throws Exception {
+            if (shed) {
+                throw new RejectedExecutionException("deadline passed");
+            }
+            return search.run(maxDepth, deadline, this::checkpoint);
+        }
+
+        /*
+         * Gives up the slot of the search if a search that should run first is
+         * waiting for one. The search runs with the priority it gained while it
+         * waited, and once its slice is over, the waiting searches are looked
+         * at again, as they gain priority while they wait.
+         */
+        private void checkpoint() {
+            long now = System.nanoTime();
+            int other = waitingPriority;
+
+            // a search past its deadline ends at its next check of the clock, rather than wait
+            if (other == Integer.MIN_VALUE || other <= running && now - sliceStart < sliceNanos
+                    || deadline - now < 0 || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+
+            lock.lock();
+            try {
+                Request<?> next = next(now);
+                if (next == null || next.rank(now) < running) {
+                    waitingPriority = next == null ? Integer.MIN_VALUE : next.rank(now);
+                    sliceStart = now;
+                    return;
+                }
+
+                pauses++;
+                sequence = SearchScheduler.this.sequence++;
+                queued = now;
+                paused.add(this);
+                freeSlots++;
+                dispatch();
+                while (!resumed) {
+                    turn.awaitUninterruptibly();
+                }
+                resumed = false;
+            } finally {
+                lock.unlock();
+            }
+            sliceStart = System.nanoTime();
+        }
+
+        /*
+         * Returns the priority of the search as it waits: its own, plus a level
+         * for every AGING_NANOS since it was submitted or paused, or the
+         * highest of all once a paused search is past its deadline.
+         */
+        int rank(long now) {
+            if (started && deadline - now < 0) {
+                return Integer.MAX_VALUE;
+            }
+            return (int) Math.min(priority + (now - queued) / AGING_NANOS, Integer.MAX_VALUE - 1);
+        }
+
+        // checks if the search should have a slot before the given one: by rank, then deadline, then order queued
+        boolean before(Request<?> other, long now) {
+            int rank = rank(now);
+            int otherRank = other.rank(now);
+
+            if (rank != otherRank) {
+                return rank > otherRank;
+            }
+            if (deadline != other.deadline) {
+                return deadline - other.deadline < 0;
+            }
+            return sequence < other.sequence;
+        }
+    }
+}
@@ -0,0 +1,501 @@
+/*
+ * An endgame database: the value of every position with up to a given number
+ * of pieces under perfect play, as computed by TablebaseGenerator.
+ *
+ * Positions are grouped by their material, the number of checkers and kings
+ * of each player, into slices. Within a slice, a position is numbered by the
+ * squares of each of its four kinds of pieces and the player to move. The
+ * squares of one kind of piece are a set of k of the 32 dark squares, which
+ * is numbered by its rank among all such sets (combinatorial number system):
+ * the sum of C(b, i + 1) over its bits b, the i-th lowest first. The index of
+ * a position is then
+ *
+ * (((computer kings * C(32, computer checkers) + computer checkers)
+ *     * C(32, human kings) + human kings) * C(32, human checkers)
+ *     + human checkers) * 2 + player to move
+ *
+ * Sets of different kinds may overlap, and a checker may stand on the row on
+ * which it would have been coronated. Such indices stand for no position and
+ * keep the value UNKNOWN, which wastes some space but keeps the index simple.
+ *
+ * The value of a position is given from the point of view of the player to
+ * move, in a byte:
+ *
+ * 0: unknown, the position is not in the database
+ * 1: draw
+ * 2 + 2 * d: win, in d moves of either player
+ * 3 + 2 * d: loss, in d moves of either player
+ *
+ * A move is a whole turn, all the jumps of a multi-jump taken together, so a
+ * position with a capture pending is not in the database. Distances longer
+ * than MAX_DISTANCE are kept as MAX_DISTANCE. Databases without distances
+ * store every win and every loss with a distance of 0.
+ *
+ * The stored values of all slices, one after the other, make up a stream of
+ * bytes: a byte per position with distances, otherwise two bits per position,
+ * four positions to a byte, the lowest bits first. The stream is cut into
+ * blocks of a fixed size, which are compressed one by one, so that a single
+ * value can be read by decompressing its block only. The file is mapped into
+ * memory rather than read, and the blocks that were decompressed last are
+ * kept in a cache of a bounded size, shared by all threads that probe the
+ * database. Only the small header is kept on the heap, however big the file.
+ *
+ * File format, all numbers big-endian:
+ *
+ * int     magic number, "CKTB"
+ * int     version
+ * int     largest number of pieces
+ * byte    1 if the distances are stored, 0 if only win, loss and draw are
+ * int     number of slices
+ * slices  int material, int number of positions, for each slice
+ * int     size of a block before compression, the last one may be shorter
+ * int     number of blocks
+ * offsets long offset of each block in the file, and the end of the last one
+ * blocks  the blocks, each compressed on its own with Deflater
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+public class Tablebase {
+
+    // the results of a probe
+    public static final int UNKNOWN = 0;
+    public static final int DRAW = 1;
+    public static final int WIN = 2;
+    public static final int LOSS = 3;
+
+    // the largest number of pieces a database may cover
+    public static final int MAX_PIECES = 6;
+
+    // the longest distance to the end of the game that is stored exactly
+    public static final int MAX_DISTANCE = 126;
+
+    // the file probed by games that were not given a database, if it exists
+    public static final String DEFAULT_FILE = "checkers.tb";
+
+    // the size of the cache of decompressed blocks of databases loaded without one given
+    public static final int DEFAULT_CACHE_SIZE_MB = 32;
+
+    static final int MAGIC = 0x434B5442;
+    static final int VERSION = 2;
+
+    // the largest part of the file that is mapped into memory at once
+    private static final long MAX_CHUNK = Integer.MAX_VALUE;
+
+    // the number of different materials, the counts of the four kinds of pieces taking 3 bits each
+    static final int MATERIALS = 1 << 12;
+
+    // BINOMIAL[n][k] is the number of sets of k of the first n squares
+    private static final int[][] BINOMIAL = new int[BitboardPosition.SQUARES + 1][MAX_PIECES + 1];
+
+    static {
+        for (int n = 0; n <= BitboardPosition.SQUARES; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= MAX_PIECES && n > 0; k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+    }
+
+    private static Tablebase defaultTablebase;
+    private static boolean defaultLoaded;
+
+    private final int maxPieces;
+    private final boolean distances;
+    private final int blockSize;
+
+    // where the values of each slice start in the stream, indexed by material, -1 for slices not in the database
+    private final long[] sliceStarts;
+
+    // the parts of the file mapped into memory, and where each block lies in them
+    private final ByteBuffer[] chunks;
+    private final int[] blockChunks, blockOffsets, blockLengths;
+
+    private final BlockCache cache;
+
+    // each thread decompresses blocks with its own inflater
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    // the number of probes, of those that found the position, and of the blocks found in the cache or not
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder probeHits = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    private Tablebase(int maxPieces, boolean distances, int blockSize, long[] sliceStarts, ByteBuffer[] chunks,
+            int[] blockChunks, int[] blockOffsets, int[] blockLengths, int cacheSizeMb) {
+        this.maxPieces = maxPieces;
+        this.distances = distances;
+        this.blockSize = blockSize;
+        this.sliceStarts = sliceStarts;
+        this.chunks = chunks;
+        this.blockChunks = blockChunks;
+        this.blockOffsets = blockOffsets;
+        this.blockLengths = blockLengths;
+        this.cache = new BlockCache((int) Math.min(Integer.MAX_VALUE, (long) cacheSizeMb * 1024 * 1024 / blockSize));
+    }
+
+    /*
+     * Returns the database probed by all games that were not given their own:
+     * the one in the file named by the system property checkers.tablebase, or
+     * in DEFAULT_FILE, or null if there is no such file.
+     */
+    public static synchronized Tablebase getDefault() {
+        if (!defaultLoaded) {
+            defaultLoaded = true;
+            Path file = Paths.get(System.getProperty("checkers.tablebase", DEFAULT_FILE));
+
+            if (Files.isRegularFile(file)) {
+                try {
+                    defaultTablebase = load(file);
+                } catch (IOException | IllegalArgumentException e) {
+                    System.err.println("Cannot load the endgame database " + file + ": " + e.getMessage());
+                }
+            }
+        }
+        return defaultTablebase;
+    }
+
+    // opens a database written by TablebaseGenerator, with a cache of the default size
+    public static Tablebase load(Path file) throws IOException {
+        return load(file, DEFAULT_CACHE_SIZE_MB);
+    }
+
+    /*
+     * Opens a database written by TablebaseGenerator, keeping up to the given
+     * number of megabytes of decompressed blocks in its cache.
+     */
+    public static Tablebase load(Path file, int cacheSizeMb) throws IOException {
+        if (cacheSizeMb < 1) {
+            throw new IllegalArgumentException("Illegal cache size. Size cannot be < 1. Found: " + cacheSizeMb);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, MAX_CHUNK));
+
+            if (header.remaining() < 21 || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IllegalArgumentException("Not an endgame database: " + file);
+            }
+            int maxPieces = header.getInt();
+            boolean distances = header.get() != 0;
+            int count = header.getInt();
+
+            if (maxPieces < 2 || maxPieces > MAX_PIECES || count < 0 || count > MATERIALS
+                    || header.remaining() < count * 8L + 8) {
+                throw new IllegalArgumentException("Corrupt endgame database: " + file);
+            }
+
+            // the slices follow each other in the stream of values
+            long[] sliceStarts = new long[MATERIALS];
+            Arrays.fill(sliceStarts, -1);
+            long streamSize = 0;
+
+            for (int i = 0; i < count; i++) {
+                int material = header.getInt();
+                int size = header.getInt();
+                if (material < 0 || material >= MATERIALS || size != size(material)) {
+                    throw new IllegalArgumentException("Corrupt endgame database: " + file);
+                }
+                sliceStarts[material] = streamSize;
+                streamSize += distances ? size : (size + 3) / 4;
+            }
+
+            int blockSize = header.getInt();
+            int noBlocks = header.getInt();
+            if (blockSize < 1 || noBlocks != (streamSize + blockSize - 1) / blockSize
+                    || header.remaining() < (noBlocks + 1) * 8L) {
+                throw new IllegalArgumentException("Corrupt endgame database: " + file);
+            }
+
+            long[] offsets = new long[noBlocks + 1];
+            for (int i = 0; i <= noBlocks; i++) {
+                offsets[i] = header.getLong();
+                if (offsets[i] < header.position() || offsets[i] > fileSize || (i > 0 && offsets[i] < offsets[i - 1])) {
+                    throw new IllegalArgumentException("Corrupt endgame database: " + file);
+                }
+            }
+
+            // map the blocks in chunks of whole blocks, as large as a buffer allows
+            List<ByteBuffer> chunks = new ArrayList<>();
+            int[] blockChunks = new int[noBlocks];
+            int[] blockOffsets = new int[noBlocks];
+            int[] blockLengths = new int[noBlocks];
+            int first = 0;
+
+            while (first < noBlocks) {
+                int last = first;
+                while (last + 1 < noBlocks && offsets[last + 2] - offsets[first] <= MAX_CHUNK) {
+                    last++;
+                }
+                if (offsets[last + 1] - offsets[first] > MAX_CHUNK) {
+                    throw new IllegalArgumentException("Corrupt endgame database: " + file);
+                }
+
+                chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, offsets[first], offsets[last + 1] - offsets[first]));
+                for (int i = first; i <= last; i++) {
+                    blockChunks[i] = chunks.size() - 1;
+                    blockOffsets[i] = (int) (offsets[i] - offsets[first]);
+                    blockLengths[i] = (int) (offsets[i + 1] - offsets[i]);
+                }
+                first = last + 1;
+            }
+
+            return new Tablebase(maxPieces, distances, blockSize, sliceStarts, chunks.toArray(new ByteBuffer[0]),
+                    blockChunks, blockOffsets, blockLengths, cacheSizeMb);
+        }
+    }
+
+    // returns the largest number of pieces of the positions in the database
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+    // checks if the database knows how far each position is from the end of the game
+    public boolean hasDistances() {
+        return distances;
+    }
+
+    /*
+     * Returns WIN, LOSS or DRAW, the result of the game under perfect play
+     * for the given player to move, or UNKNOWN if the position is not in the
+     * database.
+     */
+    public int probe(CheckersGame game, int player) {
+        return result(probeValue(game, player));
+    }
+
+    /*
+     * Returns the value of the position with the given player to move, or
+     * UNKNOWN if the position is not in the database: if it has too many
+     * pieces, or a capture is pending.
+     */
+    int probeValue(CheckersGame game, int player) {
+        BitboardPosition position = game.getPosition();
+        int human = position.pieces(CheckersPiece.HUMAN_PLAYER);
+        int computer = position.pieces(CheckersPiece.COMPUTER_PLAYER);
+
+        probes.increment();
+        if (Integer.bitCount(human | computer) > maxPieces || game.canAttackAgain() || human == 0 || computer == 0) {
+            return UNKNOWN;
+        }
+
+        int value = value(material(position), index(position, player));
+        if (value != UNKNOWN) {
+            probeHits.increment();
+        }
+        return value;
+    }
+
+    // returns the value of the position with the given index in the slice of the given material
+    int value(int material, int index) {
+        long start = sliceStarts[material];
+
+        if (start < 0) {
+            return UNKNOWN;
+        }
+
+        long offset = start + (distances ? index : index >> 2);
+        int value = block((int) (offset / blockSize))[(int) (offset % blockSize)] & 0xFF;
+
+        return distances ? value : (value >> ((index & 3) * 2)) & 3;
+    }
+
+    // returns the decompressed block with the given number, from the cache if it is there
+    private byte[] block(int block) {
+        byte[] data = cache.get(block);
+
+        if (data != null) {
+            cacheHits.increment();
+            return data;
+        }
+        cacheMisses.increment();
+
+        /*
+         * Two threads that miss the same block both decompress it, and the
+         * cache keeps one of the copies. That is rare enough to cost less than
+         * making the threads wait for each other.
+         */
+        data = new byte[blockSize];
+        Inflater inflater = inflaters.get();
+        ByteBuffer compressed = chunks[blockChunks[block]].duplicate();
+
+        compressed.position(blockOffsets[block]).limit(blockOffsets[block] + blockLengths[block]);
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int length = 0;
+            while (length < blockSize && !inflater.finished()) {
+                int inflated = inflater.inflate(data, length, blockSize - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("truncated block");
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt block " + block + " of the endgame database", e);
+        }
+
+        cache.put(block, data);
+        return data;
+    }
+
+    // returns the number of probes made
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    // returns the number of probes that found the position in the database
+    public long getProbeHits() {
+        return probeHits.sum();
+    }
+
+    // returns the number of blocks read that were found in the cache
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    // returns the number of blocks read that had to be decompressed
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return maxPieces + " pieces, " + getProbeHits() + " of " + getProbes() + " probes found, "
+                + getCacheHits() + " of " + (getCacheHits() + getCacheMisses()) + " blocks cached";
+    }
+
+    // returns WIN, LOSS, DRAW or UNKNOWN for the given value
+    static int result(int value) {
+        return value < WIN ? value : WIN + (value & 1);
+    }
+
+    // returns the number of moves to the end of the game of a won or lost position
+    static int distance(int value) {
+        return value < WIN ? 0 : (value - WIN) >> 1;
+    }
+
+    // returns the value of a won or lost position, at the given distance from the end of the game
+    static int encode(int result, int distance) {
+        return result + Math.min(distance, MAX_DISTANCE) * 2;
+    }
+
+    // returns the material with the given numbers of pieces of each kind
+    static int material(int humanCheckers, int humanKings, int compCheckers, int compKings) {
+        return humanCheckers | humanKings << 3 | compCheckers << 6 | compKings << 9;
+    }
+
+    // returns the material of the given position
+    static int material(BitboardPosition position) {
+        int kings = position.kings();
+        int human = position.pieces(CheckersPiece.HUMAN_PLAYER);
+        int computer = position.pieces(CheckersPiece.COMPUTER_PLAYER);
+
+        return material(Integer.bitCount(human & ~kings), Integer.bitCount(human & kings),
+                Integer.bitCount(computer & ~kings), Integer.bitCount(computer & kings));
+    }
+
+    // returns the number of pieces of the given material
+    static int pieces(int material) {
+        return (material & 7) + (material >> 3 & 7) + (material >> 6 & 7) + (material >> 9 & 7);
+    }
+
+    // returns the number of checkers of the given material
+    static int checkers(int material) {
+        return (material & 7) + (material >> 6 & 7);
+    }
+
+    // returns the number of indices in the slice of the given material
+    static int size(int material) {
+        long size = 2;
+        for (int shift = 0; shift < 12; shift += 3) {
+            size *= BINOMIAL[BitboardPosition.SQUARES][material >> shift & 7];
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many pieces: " + pieces(material));
+        }
+        return (int) size;
+    }
+
+    // returns the index of the position with the given player to move, within the slice of its material
+    static int index(BitboardPosition position, int player) {
+        int kings = position.kings();
+        int human = position.pieces(CheckersPiece.HUMAN_PLAYER);
+        int computer = position.pieces(CheckersPiece.COMPUTER_PLAYER);
+        int index = 0;
+
+        index = index * BINOMIAL[BitboardPosition.SQUARES][Integer.bitCount(computer & kings)] + rank(computer & kings);
+        index = index * BINOMIAL[BitboardPosition.SQUARES][Integer.bitCount(computer & ~kings)] + rank(computer & ~kings);
+        index = index * BINOMIAL[BitboardPosition.SQUARES][Integer.bitCount(human & kings)] + rank(human & kings);
+        index = index * BINOMIAL[BitboardPosition.SQUARES][Integer.bitCount(human & ~kings)] + rank(human & ~kings);
+        return index * 2 + player;
+    }
+
+    /*
+     * Sets up the position with the given index in the slice of the given
+     * material, and returns false if the index stands for no position. The
+     * player to move is the lowest bit of the index.
+     */
+    static boolean decode(int material, int index, BitboardPosition position) {
+        int rest = index >>> 1;
+        int humanCheckers = unrank(rest, material & 7);
+        rest /= BINOMIAL[BitboardPosition.SQUARES][material & 7];
+        int humanKings = unrank(rest, material >> 3 & 7);
+        rest /= BINOMIAL[BitboardPosition.SQUARES][material >> 3 & 7];
+        int compCheckers = unrank(rest, material >> 6 & 7);
+        rest /= BINOMIAL[BitboardPosition.SQUARES][material >> 6 & 7];
+        int compKings = unrank(rest, material >> 9 & 7);
+
+        // pieces may not share a square, and checkers are coronated on reaching the far row
+        if ((humanCheckers & humanKings) != 0 || ((humanCheckers | humanKings) & (compCheckers | compKings)) != 0
+                || (compCheckers & compKings) != 0) {
+            return false;
+        }
+        if ((humanCheckers & BitboardPosition.TOP_ROW) != 0 || (compCheckers & BitboardPosition.BOTTOM_ROW) != 0) {
+            return false;
+        }
+
+        position.set(humanCheckers | humanKings, compCheckers | compKings, humanKings | compKings);
+        return true;
+    }
+
+    // returns the rank of the set among all sets of the same size
+    private static int rank(int set) {
+        int rank = 0;
+        for (int i = 1; set != 0; i++) {
+            rank += BINOMIAL[Integer.numberOfTrailingZeros(set)][i];
+            set &= set - 1;
+        }
+        return rank;
+    }
+
+    // returns the set of the given size with the given rank, or the rank modulo the number of such sets
+    private static int unrank(int rank, int size) {
+        rank %= BINOMIAL[BitboardPosition.SQUARES][size];
+        int set = 0;
+        int bit = BitboardPosition.SQUARES - 1;
+
+        for (int i = size; i > 0; i--) {
+            while (BINOMIAL[bit][i] > rank) {
+                bit--;
+            }
+            rank -= BINOMIAL[bit][i];
+            set |= 1 << bit;
+        }
+        return set;
+    }
+}
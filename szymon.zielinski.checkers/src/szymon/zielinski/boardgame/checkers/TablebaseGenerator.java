@@ -0,0 +1,384 @@
+/*
+ * Generates an endgame database (see Tablebase) of all positions with up to a
+ * given number of pieces, by retrograde analysis: starting from the positions
+ * in which the game is over, the values are worked back towards positions
+ * further and further from the end of the game.
+ *
+ * The slices of the database are solved one at a time, in an order in which
+ * every move leads to a slice that is already solved or to the slice itself:
+ * fewer pieces first, since a capture takes a piece off the board, and then
+ * fewer checkers first, since a coronation turns a checker into a king.
+ *
+ * A slice is solved in rounds. Round d finds the positions that are won in d
+ * moves: those with a move that leads to a position lost in d - 1 moves, and
+ * none that leads to one lost sooner. A position is lost as soon as every one
+ * of its moves is known to lead to a won position, in one move more than the
+ * longest of those wins. Round 0 also finds the positions in which the
+ * player to move has no move left, which are lost at once. The rounds go on
+ * until one of them finds nothing, and the positions that are left are draws.
+ *
+ * Each round goes through the whole slice in parallel. The threads share a
+ * single array of values, one byte per position, which they update without
+ * locking: each value is written once, by the thread that works on its
+ * position, with a compare-and-set from UNKNOWN, and read with volatile reads
+ * by the threads working on the positions that lead to it.
+ *
+ * Usage: java szymon.zielinski.boardgame.checkers.TablebaseGenerator [options] pieces
+ *
+ * -threads N    use N threads, by default one per processor
+ * -out FILE     write the database to the given file, by default checkers.tb
+ * -wdl          store win, loss or draw only, without the distances
+ * -block KB     compress the database in blocks of the given size, by default 16
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+
+public class TablebaseGenerator {
+
+    // the default size of the blocks of the database file, before compression
+    public static final int DEFAULT_BLOCK_SIZE = 16 * 1024;
+
+    // atomic access to the bytes of a value array
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    private final int maxPieces;
+    private final ForkJoinPool pool;
+
+    // the values of the slices solved so far, indexed by material
+    private final byte[][] slices = new byte[Tablebase.MATERIALS][];
+    private final List<Integer> materials = new ArrayList<>();
+
+    // each thread works on its own game
+    private final ThreadLocal<Solver> solvers = ThreadLocal.withInitial(Solver::new);
+
+    // create a generator of all positions with up to maxPieces pieces, working in the given number of threads
+    public TablebaseGenerator(int maxPieces, int threads) {
+        if (maxPieces < 2 || maxPieces > Tablebase.MAX_PIECES) {
+            throw new IllegalArgumentException("Illegal number of pieces. Number must be between 2 and "
+                    + Tablebase.MAX_PIECES + ". Found: " + maxPieces);
+        }
+        this.maxPieces = maxPieces;
+        this.pool = new ForkJoinPool(threads);
+
+        // every material with at least one piece on each side, in the order of solving
+        for (int material = 0; material < Tablebase.MATERIALS; material++) {
+            int human = (material & 7) + (material >> 3 & 7);
+            int computer = (material >> 6 & 7) + (material >> 9 & 7);
+
+            if (human > 0 && computer > 0 && human + computer <= maxPieces) {
+                materials.add(material);
+            }
+        }
+        materials.sort(Comparator.comparingInt(Tablebase::pieces).thenComparingInt(Tablebase::checkers));
+    }
+
+    /*
+     * Solves every slice of the database, reporting the progress to the given
+     * stream, if not null.
+     */
+    public void generate(PrintStream log) throws InterruptedException {
+        for (int material : materials) {
+            long start = System.nanoTime();
+            int rounds = solve(material);
+
+            if (log != null) {
+                log.println(String.format(java.util.Locale.ROOT, "%s  %d positions  %d rounds  %.3f s",
+                        describe(material), Tablebase.size(material), rounds, (System.nanoTime() - start) / 1e9));
+            }
+        }
+    }
+
+    /*
+     * Writes the generated database to the given file, in the format read by
+     * Tablebase.load, with or without the distances, in blocks of the given
+     * size before compression.
+     */
+    public void write(Path file, boolean distances, int blockSize) throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Illegal block size. Size cannot be < 1. Found: " + blockSize);
+        }
+
+        long streamSize = 0;
+        for (int material : materials) {
+            streamSize += distances ? slices[material].length : (slices[material].length + 3) / 4;
+        }
+        int noBlocks = (int) ((streamSize + blockSize - 1) / blockSize);
+        long[] offsets = new long[noBlocks + 1];
+
+        try (RandomAccessFile out = new RandomAccessFile(file.toFile(), "rw")) {
+            out.setLength(0);
+            out.writeInt(Tablebase.MAGIC);
+            out.writeInt(Tablebase.VERSION);
+            out.writeInt(maxPieces);
+            out.writeBoolean(distances);
+            out.writeInt(materials.size());
+
+            for (int material : materials) {
+                out.writeInt(material);
+                out.writeInt(slices[material].length);
+            }
+            out.writeInt(blockSize);
+            out.writeInt(noBlocks);
+
+            // leave room for the offsets of the blocks, known once they are written
+            long offsetsPosition = out.getFilePointer();
+            out.seek(offsetsPosition + offsets.length * 8L);
+
+            byte[] block = new byte[blockSize];
+            byte[] compressed = new byte[blockSize + blockSize / 8 + 64];
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            int length = 0, noWritten = 0;
+
+            for (int material : materials) {
+                byte[] values = distances ? slices[material] : pack(slices[material]);
+
+                for (int i = 0; i < values.length; ) {
+                    int copied = Math.min(values.length - i, blockSize - length);
+                    System.arraycopy(values, i, block, length, copied);
+                    i += copied;
+                    length += copied;
+
+                    if (length == blockSize) {
+                        offsets[noWritten++] = out.getFilePointer();
+                        writeBlock(out, deflater, block, length, compressed);
+                        length = 0;
+                    }
+                }
+            }
+            if (length > 0) {
+                offsets[noWritten++] = out.getFilePointer();
+                writeBlock(out, deflater, block, length, compressed);
+            }
+            offsets[noWritten] = out.getFilePointer();
+            deflater.end();
+
+            out.seek(offsetsPosition);
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+        }
+    }
+
+    // compresses the first length bytes of the block and writes them to the file
+    private static void writeBlock(RandomAccessFile out, Deflater deflater, byte[] block, int length, byte[] buffer)
+            throws IOException {
+        deflater.reset();
+        deflater.setInput(block, 0, length);
+        deflater.finish();
+
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+    }
+
+    // packs the values of a slice into two bits each, keeping win, loss or draw only
+    private static byte[] pack(byte[] values) {
+        byte[] packed = new byte[(values.length + 3) / 4];
+
+        for (int i = 0; i < values.length; i++) {
+            packed[i >> 2] |= Tablebase.result(values[i] & 0xFF) << ((i & 3) * 2);
+        }
+        return packed;
+    }
+
+    // describes a material as the pieces of each player, for example "Kk v K"
+    private static String describe(int material) {
+        return "k".repeat(material & 7) + "K".repeat(material >> 3 & 7) + " v "
+                + "c".repeat(material >> 6 & 7) + "C".repeat(material >> 9 & 7);
+    }
+
+    // solves the slice of the given material and returns the number of rounds it took
+    private int solve(int material) throws InterruptedException {
+        byte[] values = new byte[Tablebase.size(material)];
+        slices[material] = values;
+
+        LongAdder found = new LongAdder();
+        AtomicBoolean deferred = new AtomicBoolean();
+        int round = 0;
+
+        while (true) {
+            int currentRound = round;
+            found.reset();
+            deferred.set(false);
+
+            run(values.length, i -> solvers.get().solve(material, values, i, currentRound, found, deferred));
+
+            if (found.sum() == 0 && !deferred.get()) {
+                break;
+            }
+            round++;
+        }
+
+        // the positions that are neither won nor lost are draws
+        run(values.length, i -> solvers.get().draw(material, values, i));
+        return round + 1;
+    }
+
+    // runs the given task for every index of a slice of the given size, in the pool
+    private void run(int size, IntConsumer task) throws InterruptedException {
+        try {
+            pool.submit(() -> IntStream.range(0, size).parallel().forEach(task)).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // returns the value of a solved position, read atomically if its slice is being solved
+    private int valueOf(BitboardPosition position, int player) {
+        byte[] values = slices[Tablebase.material(position)];
+        return (byte) VALUES.getVolatile(values, Tablebase.index(position, player)) & 0xFF;
+    }
+
+    /*
+     * The work of a single thread: it sets up positions on its own game and
+     * goes through all the moves of each.
+     */
+    private class Solver {
+
+        private final CheckersGame game = new CheckersGame();
+        private final BitboardPosition position = new BitboardPosition();
+        private final MoveList[] moveLists = new MoveList[16];
+
+        // what the moves of the current position lead to
+        private int moves, shortestWin, longestLoss;
+        private boolean escape;
+
+        Solver() {
+            for (int i = 0; i < moveLists.length; i++) {
+                moveLists[i] = new MoveList();
+            }
+        }
+
+        /*
+         * Works out the value of the position with the given index in the given
+         * round, if it is not known yet, and counts it as found. A win that is
+         * further than the round from the end of the game is left for a later
+         * round, in which it may turn out to be shorter.
+         */
+        void solve(int material, byte[] values, int index, int round, LongAdder found, AtomicBoolean deferred) {
+            if ((byte) VALUES.getVolatile(values, index) != Tablebase.UNKNOWN
+                    || !Tablebase.decode(material, index, position)) {
+                return;
+            }
+            int player = index & 1;
+
+            game.setPieces(position.pieces(CheckersPiece.HUMAN_PLAYER), position.pieces(CheckersPiece.COMPUTER_PLAYER),
+                    position.kings());
+            moves = 0;
+            shortestWin = Integer.MAX_VALUE;
+            longestLoss = 0;
+            escape = false;
+            visitMoves(player, 0);
+
+            int value;
+            if (moves == 0) {
+                value = Tablebase.encode(Tablebase.LOSS, 0);
+            } else if (shortestWin != Integer.MAX_VALUE) {
+                if (shortestWin > round && round < Tablebase.MAX_DISTANCE) {
+                    deferred.set(true);
+                    return;
+                }
+                value = Tablebase.encode(Tablebase.WIN, shortestWin);
+            } else if (!escape) {
+                value = Tablebase.encode(Tablebase.LOSS, longestLoss);
+            } else {
+                return;
+            }
+
+            if (VALUES.compareAndSet(values, index, (byte) Tablebase.UNKNOWN, (byte) value)) {
+                found.increment();
+            }
+        }
+
+        // marks the position with the given index as a draw, if it is a position and not won or lost
+        void draw(int material, byte[] values, int index) {
+            if ((byte) VALUES.getVolatile(values, index) == Tablebase.UNKNOWN
+                    && Tablebase.decode(material, index, position)) {
+                VALUES.compareAndSet(values, index, (byte) Tablebase.UNKNOWN, (byte) Tablebase.DRAW);
+            }
+        }
+
+        // goes through every move of the given player, all jumps of a multi-jump making one move
+        private void visitMoves(int player, int depth) {
+            MoveList list = moveLists[depth];
+            game.generateMoves(player, list);
+
+            for (int i = 0; i < list.size(); i++) {
+                game.makeMove(list.get(i));
+
+                if (game.canAttackAgain()) {
+                    visitMoves(player, depth + 1);
+                } else {
+                    visit((player + 1) % 2);
+                }
+                game.unmakeMove();
+            }
+        }
+
+        // takes into account the position reached by a move, with the given player to move
+        private void visit(int player) {
+            BitboardPosition next = game.getPosition();
+            int value = next.count(player) == 0 ? Tablebase.encode(Tablebase.LOSS, 0) : valueOf(next, player);
+
+            moves++;
+            switch (Tablebase.result(value)) {
+                case Tablebase.LOSS:
+                    shortestWin = Math.min(shortestWin, Tablebase.distance(value) + 1);
+                    break;
+                case Tablebase.WIN:
+                    longestLoss = Math.max(longestLoss, Tablebase.distance(value) + 1);
+                    break;
+                default:
+                    escape = true;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path file = Paths.get(Tablebase.DEFAULT_FILE);
+        boolean distances = true;
+        int blockSize = DEFAULT_BLOCK_SIZE;
+        int pieces = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-out") && i + 1 < args.length) {
+                file = Paths.get(args[++i]);
+            } else if (args[i].equals("-wdl")) {
+                distances = false;
+            } else if (args[i].equals("-block") && i + 1 < args.length) {
+                blockSize = Integer.parseInt(args[++i]) * 1024;
+            } else {
+                pieces = Integer.parseInt(args[i]);
+            }
+        }
+
+        long start = System.nanoTime();
+        TablebaseGenerator generator = new TablebaseGenerator(pieces, threads);
+        generator.generate(System.out);
+        generator.write(file, distances, blockSize);
+        generator.pool.shutdown();
+
+        System.out.println(String.format(java.util.Locale.ROOT, "%d pieces written to %s in %.1f s",
+                pieces, file, (System.nanoTime() - start) / 1e9));
+    }
+}
@@ -0,0 +1,487 @@
+/*
+ * Plays a match between two engines without the GUI and reports the result.
+ *
+ * The games of the match are played on a fixed pool of threads, one per core
+ * by default, each thread playing one game at a time. Each thread keeps its
+ * own transposition table for each engine, which is cleared before every game,
+ * so the result of a game does not depend on the games played before it.
+ *
+ * Games are played in pairs. Both games of a pair start with the same random
+ * opening, and the engines swap sides for the second game, so that neither
+ * engine profits from a lucky opening. A game that has not ended after a given
+ * number of moves is drawn.
+ *
+ * Usage: java szymon.zielinski.boardgame.checkers.Tournament [options]
+ *
+ * -a ENGINE      the first engine (default: hard)
+ * -b ENGINE      the second engine (default: medium)
+ * -games N       the number of games, rounded up to an even number (default: 100)
+ * -threads N     the number of games played at once (default: one per core)
+ * -opening N     the number of random moves that open each game (default: 4)
+ * -maxmoves N    the number of moves after which a game is drawn (default: 200)
+ * -hash MB       the size of each transposition table (default: 4)
+ * -seed N        the seed of the random openings (default: 1)
+ * -pdn FILE      write the games to the given file in Portable Draughts Notation
+ *
+ * An engine is given as level[:millis[:kingValue[:features]]], where level is
+ * beginner, easy, medium, hard or a number of moves to look ahead. With
+ * millis, the engine deepens its search for that long, up to the depth of its
+ * level. kingValue changes the value of a king in the evaluation function,
+ * or names a file to read all weights of the evaluation function from.
+ * features lists the selective search features the engine uses, joined by
+ * '+': lmr for late move reductions and futility for futility pruning, or
+ * none. By default, an engine uses none of them, like the game; a match of
+ * hard:0::lmr+futility against hard shows what they are worth.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class Tournament {
+
+    // the results of a game, for the first engine
+    public static final int LOSS = 0;
+    public static final int DRAW = 1;
+    public static final int WIN = 2;
+
+    private final Engine first, second;
+    private int games = 100;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int openingMoves = 4;
+    private int maxMoves = 200;
+    private int hashSizeInMb = 4;
+    private long seed = 1;
+    private PdnWriter pdnWriter;
+
+    // the transposition tables of the two engines, for each thread
+    private final ThreadLocal<TranspositionTable[]> tables = new ThreadLocal<TranspositionTable[]>();
+
+    // create a match between the given engines
+    public Tournament(Engine first, Engine second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    // changes the number of games, rounded up to an even number
+    public void setGames(int games) {
+        this.games = games + games % 2;
+    }
+
+    // changes the number of games played at once
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    // changes the number of random moves that open each game
+    public void setOpeningMoves(int openingMoves) {
+        this.openingMoves = openingMoves;
+    }
+
+    // changes the number of moves after which a game is drawn
+    public void setMaxMoves(int maxMoves) {
+        this.maxMoves = maxMoves;
+    }
+
+    // changes the size of the transposition table of each engine
+    public void setHashSize(int sizeInMb) {
+        this.hashSizeInMb = sizeInMb;
+    }
+
+    // changes the seed of the random openings
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    // changes the writer the games are recorded with, null for none
+    public void setPdnWriter(PdnWriter writer) {
+        this.pdnWriter = writer;
+    }
+
+    /*
+     * Plays all games of the match and returns the result. Progress is printed
+     * to the given stream, if not null, after every tenth of the games.
+     */
+    public Result play(java.io.PrintStream progress) throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<Integer> results = new ExecutorCompletionService<Integer>(pool);
+        long start = System.nanoTime();
+        int[] count = new int[3];
+
+        try {
+            for (int i = 0; i < games; i++) {
+                final int game = i;
+                results.submit(new Callable<Integer>() {
+
+                    @Override
+                    public Integer call() {
+                        return playGame(game);
+                    }
+                });
+            }
+
+            for (int i = 1; i <= games; i++) {
+                count[results.take().get()]++;
+
+                if (progress != null && (i * 10) % games < 10) {
+                    progress.println(i + " games: " + count[WIN] + " wins, " + count[DRAW]
+                            + " draws, " + count[LOSS] + " losses");
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return new Result(count[WIN], count[DRAW], count[LOSS], System.nanoTime() - start);
+    }
+
+    /*
+     * Plays the game with the given number and returns its result for the
+     * first engine. The first engine moves first in even games, the second
+     * engine in odd games.
+     */
+    int playGame(int number) {
+        Random random = new Random(seed * 1000003 + number / 2);
+        TranspositionTable[] engineTables = tables();
+        CheckersGame game = new CheckersGame();
+        Engine[] engines = number % 2 == 0
+                ? new Engine[] { first, second }
+                : new Engine[] { second, first };
+        TranspositionTable[] sideTables = number % 2 == 0
+                ? engineTables
+                : new TranspositionTable[] { engineTables[1], engineTables[0] };
+        MoveList moves = new MoveList();
+        PdnGame record = pdnWriter != null ? new PdnGame() : null;
+
+        engineTables[0].clear();
+        engineTables[1].clear();
+        game.setAI(CheckersGame.NO_AI);
+
+        // the human player moves first
+        int player = CheckersPiece.HUMAN_PLAYER;
+
+        for (int moveNo = 0; game.winner(player) == -1; moveNo++) {
+            if (moveNo >= maxMoves) {
+                record(record, number, engines, PdnGame.DRAWN);
+                return DRAW;
+            }
+
+            int move;
+            game.generateMoves(player, moves);
+
+            if (moveNo < openingMoves) {
+                move = moves.get(random.nextInt(moves.size()));
+            } else {
+                int side = player == CheckersPiece.HUMAN_PLAYER ? 0 : 1;
+                game.setTranspositionTable(sideTables[side]);
+                move = engines[side].move(game, player, random);
+            }
+
+            if (!game.movePiece(CheckersMove.source(move), CheckersMove.dest(move), player)) {
+                throw new IllegalStateException("Illegal move: " + CheckersMove.toString(move));
+            }
+            if (record != null) {
+                record.addHop(CheckersMove.source(move), CheckersMove.dest(move));
+            }
+
+            // the turn passes unless the piece can jump again
+            if (!game.canAttackAgain()) {
+                player = (player + 1) % 2;
+            }
+        }
+
+        boolean firstWon = (game.winner(player) == CheckersPiece.HUMAN_PLAYER) == (number % 2 == 0);
+        record(record, number, engines, game.winner(player) == CheckersPiece.HUMAN_PLAYER
+                ? PdnGame.WHITE_WINS : PdnGame.BLACK_WINS);
+        return firstWon ? WIN : LOSS;
+    }
+
+    // writes a game that has ended with the given result, if games are recorded
+    private void record(PdnGame record, int number, Engine[] engines, String result) {
+        if (record == null) {
+            return;
+        }
+
+        record.setTag("Event", first + " vs " + second);
+        record.setTag("Round", Integer.toString(number + 1));
+        record.setTag("White", engines[0].toString());
+        record.setTag("Black", engines[1].toString());
+        record.setResult(result);
+        try {
+            pdnWriter.write(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // returns the transposition tables of the engines for the current thread
+    private TranspositionTable[] tables() {
+        TranspositionTable[] result = tables.get();
+
+        if (result == null) {
+            result = new TranspositionTable[] {
+                new TranspositionTable(hashSizeInMb), new TranspositionTable(hashSizeInMb) };
+            tables.set(result);
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Engine first = Engine.parse("hard");
+        Engine second = Engine.parse("medium");
+        Tournament tournament;
+        int games = 100, threads = 0, openingMoves = 4, maxMoves = 200, hash = 4;
+        long seed = 1;
+        String pdn = null;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+
+            if (args[i].equals("-a")) {
+                first = Engine.parse(value);
+            } else if (args[i].equals("-b")) {
+                second = Engine.parse(value);
+            } else if (args[i].equals("-games")) {
+                games = Integer.parseInt(value);
+            } else if (args[i].equals("-threads")) {
+                threads = Integer.parseInt(value);
+            } else if (args[i].equals("-opening")) {
+                openingMoves = Integer.parseInt(value);
+            } else if (args[i].equals("-maxmoves")) {
+                maxMoves = Integer.parseInt(value);
+            } else if (args[i].equals("-hash")) {
+                hash = Integer.parseInt(value);
+            } else if (args[i].equals("-seed")) {
+                seed = Long.parseLong(value);
+            } else if (args[i].equals("-pdn")) {
+                pdn = value;
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        tournament = new Tournament(first, second);
+        tournament.setGames(games);
+        if (threads > 0) {
+            tournament.setThreads(threads);
+        }
+        tournament.setOpeningMoves(openingMoves);
+        tournament.setMaxMoves(maxMoves);
+        tournament.setHashSize(hash);
+        tournament.setSeed(seed);
+
+        System.out.println(first + " vs " + second + ", " + tournament.games + " games on "
+                + tournament.threads + " threads");
+        if (pdn != null) {
+            tournament.setPdnWriter(new PdnWriter(Paths.get(pdn)));
+        }
+
+        try {
+            System.out.println(tournament.play(System.out));
+        } finally {
+            if (tournament.pdnWriter != null) {
+                tournament.pdnWriter.close();
+            }
+        }
+
+        if (Tablebase.getDefault() != null) {
+            System.out.println("endgame database: " + Tablebase.getDefault());
+        }
+    }
+
+    /*
+     * An engine taking part in a match: how far it looks ahead, for how long it
+     * may think about a move and the weights of its evaluation function.
+     */
+    public static class Engine {
+
+        private final String name;
+        private final int depth;
+        private final Duration budget;
+        private final EvalWeights weights;
+        private boolean lateMoveReductions = false;
+        private boolean futilityPruning = false;
+
+        /*
+         * Create an engine that looks depth moves ahead, deepening its search
+         * for the given time if not null. An engine with a depth of 0 moves at
+         * random, like the beginner AI.
+         */
+        public Engine(String name, int depth, Duration budget, EvalWeights weights) {
+            this.name = name;
+            this.depth = depth;
+            this.budget = budget;
+            this.weights = weights;
+        }
+
+        // changes the selective search features the engine uses
+        public void setSelectiveSearch(boolean lateMoveReductions, boolean futilityPruning) {
+            this.lateMoveReductions = lateMoveReductions;
+            this.futilityPruning = futilityPruning;
+        }
+
+        // create an engine from a description: level[:millis[:kingValue[:features]]]
+        public static Engine parse(String description) throws IOException {
+            String[] parts = description.split(":");
+            String level = parts[0].toLowerCase(Locale.ROOT);
+            Duration budget = null;
+            EvalWeights weights = EvalWeights.DEFAULT;
+            int depth;
+
+            if (level.equals("beginner")) {
+                depth = CheckersGame.BEGINNER_AI;
+            } else if (level.equals("easy")) {
+                depth = CheckersGame.EASY_AI;
+            } else if (level.equals("medium")) {
+                depth = CheckersGame.MEDIUM_AI;
+            } else if (level.equals("hard")) {
+                depth = CheckersGame.HARD_AI;
+            } else {
+                depth = Integer.parseInt(level);
+            }
+
+            if (parts.length > 1 && Long.parseLong(parts[1]) > 0) {
+                budget = Duration.ofMillis(Long.parseLong(parts[1]));
+            }
+            if (parts.length > 2 && !parts[2].isEmpty()) {
+                try {
+                    weights = weights.withPieceValues(weights.getCheckerValue(), Double.parseDouble(parts[2]));
+                } catch (NumberFormatException e) {
+                    weights = EvalWeights.load(Paths.get(parts[2]));
+                }
+            }
+
+            Engine engine = new Engine(description, depth, budget, weights);
+            if (parts.length > 3) {
+                List<String> features = Arrays.asList(parts[3].toLowerCase(Locale.ROOT).split("\\+"));
+                engine.setSelectiveSearch(features.contains("lmr"), features.contains("futility"));
+            }
+            return engine;
+        }
+
+        // returns the move of this engine for the given player
+        int move(CheckersGame game, int player, Random random) {
+            return move(game, player, random, depth, Long.MAX_VALUE);
+        }
+
+        // as above, searching to at most maxDepth and until the given System.nanoTime() at the latest
+        int move(CheckersGame game, int player, Random random, int maxDepth, long deadline) {
+            if (depth == CheckersGame.BEGINNER_AI) {
+                MoveList moves = new MoveList();
+                game.generateMoves(player, moves);
+                return moves.get(random.nextInt(moves.size()));
+            }
+
+            return search(game, player, maxDepth, deadline).getMove();
+        }
+
+        // returns the depth this engine searches to, 0 if it moves at random
+        int getDepth() {
+            return depth;
+        }
+
+        // searches for the move of this engine for the given player, which must not move at random
+        SearchResult search(CheckersGame game, int player) {
+            return search(game, player, depth, Long.MAX_VALUE);
+        }
+
+        // as above, searching to at most maxDepth and until the given System.nanoTime() at the latest
+        SearchResult search(CheckersGame game, int player, int maxDepth, long deadline) {
+            Duration limit = budget;
+            if (deadline != Long.MAX_VALUE) {
+                Duration left = Duration.ofNanos(Math.max(1, deadline - System.nanoTime()));
+                limit = limit == null || left.compareTo(limit) < 0 ? left : limit;
+            }
+
+            game.setEvalWeights(weights);
+            game.setLateMoveReductions(lateMoveReductions);
+            game.setFutilityPruning(futilityPruning);
+            return game.searchMove(player, Math.min(depth, maxDepth), limit, 0, null);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    // the result of a match, for the first engine
+    public static class Result {
+
+        private final int wins, draws, losses;
+        private final long nanos;
+
+        Result(int wins, int draws, int losses, long nanos) {
+            this.wins = wins;
+            this.draws = draws;
+            this.losses = losses;
+            this.nanos = nanos;
+        }
+
+        public int getWins() {
+            return wins;
+        }
+
+        public int getDraws() {
+            return draws;
+        }
+
+        public int getLosses() {
+            return losses;
+        }
+
+        // returns the share of the points won by the first engine
+        public double getScore() {
+            return (wins + draws * 0.5) / (wins + draws + losses);
+        }
+
+        // returns the Elo difference between the engines
+        public double getEloDifference() {
+            return elo(getScore());
+        }
+
+        /*
+         * Returns half the width of the 95% confidence interval of the Elo
+         * difference, from the spread of the results of the games.
+         */
+        public double getEloError() {
+            int n = wins + draws + losses;
+            double score = getScore();
+            double variance = (wins * Math.pow(1 - score, 2) + draws * Math.pow(0.5 - score, 2)
+                    + losses * Math.pow(score, 2)) / n;
+            double margin = 1.96 * Math.sqrt(variance / n);
+
+            return (elo(score + margin) - elo(score - margin)) / 2;
+        }
+
+        // returns the number of games played per second
+        public double getGamesPerSecond() {
+            return (wins + draws + losses) / (nanos / 1e9);
+        }
+
+        // returns the Elo difference that gives the expected score
+        private static double elo(double score) {
+            score = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+            return -400 * Math.log10(1 / score - 1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "W/D/L: %d/%d/%d, score %.1f%%, Elo difference %+.1f +/- %.1f, %.2f s, %.2f games/s",
+                    wins, draws, losses, getScore() * 100, getEloDifference(), getEloError(),
+                    nanos / 1e9, getGamesPerSecond()).replace("-0.0 ", "+0.0 ");
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * A fixed-size hash table of search results, indexed by the Zobrist key of a
+ * position and the side to move.
+ *
+ * The table is made up of buckets of two entries. The first entry of a bucket
+ * keeps the result of the deepest search, the second one is always replaced.
+ * Each entry takes two longs: the full key XORed with the packed result, and
+ * the packed result.
+ *
+ * bits  0 - 19: best move, encoded by CheckersMove
+ * bits 20 - 27: depth of the search
+ * bits 28 - 29: type of the bound on the score
+ * bits 30 - 31: age of the entry
+ * bits 32 - 63: score, in centipieces
+ *
+ * Entries left over from an earlier search are replaced first, whatever their
+ * depth.
+ *
+ * The table is shared by all threads of a parallel search without any locking.
+ * Two threads that write to the same entry at once may leave it with the key
+ * of one result and the data of the other. Since the key is stored XORed with
+ * the data, such a mixed-up entry no longer matches either key and is ignored.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.util.Arrays;
+
+public class TranspositionTable {
+
+    public static final int DEFAULT_SIZE_MB = 16;
+
+    // the type of the bound on the stored score
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int UPPER_BOUND = 3;
+
+    // returned by probe when the position is not in the table
+    public static final long NOT_FOUND = 0;
+
+    private static final int LONGS_PER_BUCKET = 4;
+    private static final int BYTES_PER_BUCKET = LONGS_PER_BUCKET * 8;
+    private static final int MOVE_MASK = 0xFFFFF;
+    private static final int DEPTH_SHIFT = 20;
+    private static final int DEPTH_MASK = 0xFF;
+    private static final int BOUND_SHIFT = 28;
+    private static final int AGE_SHIFT = 30;
+    private static final int AGE_MASK = 0x3;
+    private static final int SCORE_SHIFT = 32;
+    private static final String ERROR_MESSAGE = "Illegal table size. Size cannot be < 1. Found: ";
+
+    private static TranspositionTable defaultTable;
+
+    private final long[] table;
+    private final int bucketMask;
+    private volatile int age;
+
+    // create a table that takes up to the given number of megabytes
+    public TranspositionTable(int sizeInMb) {
+        if (sizeInMb < 1) {
+            throw new IllegalArgumentException(ERROR_MESSAGE + sizeInMb);
+        }
+
+        // use the largest power of two number of buckets that fits
+        long buckets = Long.highestOneBit((long) sizeInMb * 1024 * 1024 / BYTES_PER_BUCKET);
+        buckets = Math.min(buckets, Integer.MAX_VALUE / LONGS_PER_BUCKET + 1);
+
+        table = new long[(int) buckets * LONGS_PER_BUCKET];
+        bucketMask = (int) buckets - 1;
+    }
+
+    // returns the table shared by all games that were not given their own
+    public static synchronized TranspositionTable getDefault() {
+        if (defaultTable == null) {
+            defaultTable = new TranspositionTable(DEFAULT_SIZE_MB);
+        }
+        return defaultTable;
+    }
+
+    // returns the size of the table in megabytes
+    public int sizeInMb() {
+        return (int) ((long) table.length * 8 / (1024 * 1024));
+    }
+
+    // remove all entries from the table
+    public void clear() {
+        Arrays.fill(table, 0);
+    }
+
+    // marks the start of a new search, so that older entries are replaced first
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    /*
+     * Returns the packed result stored for the given key, or NOT_FOUND. Use the
+     * static methods below to unpack it.
+     */
+    public long probe(long key) {
+        int index = bucketIndex(key);
+        long data = table[index + 1];
+
+        if ((table[index] ^ data) == key && data != NOT_FOUND) {
+            return data;
+        }
+        data = table[index + 3];
+        if ((table[index + 2] ^ data) == key && data != NOT_FOUND) {
+            return data;
+        }
+        return NOT_FOUND;
+    }
+
+    // stores the result of a search of the position with the given key
+    public void store(long key, int depth, int bound, int score, int move) {
+        int index = bucketIndex(key);
+        long depthPreferred = table[index + 1];
+        boolean sameKey = (table[index] ^ depthPreferred) == key;
+        long oldData = sameKey ? depthPreferred : probe(key);
+
+        // keep the best move of an earlier search of the same position
+        if (move == CheckersMove.NONE && oldData != NOT_FOUND) {
+            move = move(oldData);
+        }
+
+        long data = (move & MOVE_MASK)
+                | ((long) (Math.min(depth, DEPTH_MASK) & DEPTH_MASK) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) age << AGE_SHIFT)
+                | ((long) score << SCORE_SHIFT);
+
+        // replace the depth-preferred entry if it is shallower or out of date
+        if (sameKey || depthPreferred == NOT_FOUND
+                || depth >= depth(depthPreferred) || age(depthPreferred) != age) {
+            table[index] = key ^ data;
+            table[index + 1] = data;
+        } else {
+            table[index + 2] = key ^ data;
+            table[index + 3] = data;
+        }
+    }
+
+    // returns the best move of a stored result
+    public static int move(long data) {
+        return (int) data & MOVE_MASK;
+    }
+
+    // returns the depth of a stored result
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    // returns the type of the bound of a stored result
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    // returns the score of a stored result
+    public static int score(long data) {
+        return (int) (data >>> SCORE_SHIFT);
+    }
+
+    private static int age(long data) {
+        return (int) (data >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    private int bucketIndex(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) * LONGS_PER_BUCKET;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Random keys for Zobrist hashing of checkers positions.
+ *
+ * The hash key of a position is the XOR of the keys of all its pieces (one key
+ * per owner, type and square), the key of the square of a piece that has to
+ * capture again, if any, and the side-to-move key when the computer is to
+ * move. Making a move only changes a few of these, so CheckersGame updates its
+ * key incrementally. The keys are generated from a fixed seed, so a position
+ * has the same key in every run of the program.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import java.util.Random;
+
+public final class Zobrist {
+
+    private static final long SEED = 0x5DEECE66DL;
+
+    // indexed by [owner * 2 + type][bit of the square]
+    private static final long[][] PIECE_KEYS = new long[4][BitboardPosition.SQUARES];
+    private static final long[] CONSECUTIVE_KEYS = new long[BitboardPosition.SQUARES];
+    private static final long SIDE_TO_MOVE_KEY;
+
+    static {
+        Random generator = new Random(SEED);
+
+        for (int i = 0; i < PIECE_KEYS.length; i++) {
+            for (int j = 0; j < BitboardPosition.SQUARES; j++) {
+                PIECE_KEYS[i][j] = generator.nextLong();
+            }
+        }
+        for (int j = 0; j < BitboardPosition.SQUARES; j++) {
+            CONSECUTIVE_KEYS[j] = generator.nextLong();
+        }
+        SIDE_TO_MOVE_KEY = generator.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    // returns the key of a piece of the given owner and type on the given square
+    public static long piece(int owner, int type, int square) {
+        return PIECE_KEYS[owner * 2 + type][BitboardPosition.bit(square)];
+    }
+
+    // returns the key of a piece on the given square that has to capture again
+    public static long consecutiveAttack(int square) {
+        return CONSECUTIVE_KEYS[BitboardPosition.bit(square)];
+    }
+
+    // returns the key that is added when the given player is to move
+    public static long sideToMove(int player) {
+        return player == CheckersPiece.COMPUTER_PLAYER ? SIDE_TO_MOVE_KEY : 0;
+    }
+
+    // computes the key of the pieces of the given position from scratch
+    public static long pieces(BitboardPosition position) {
+        long key = 0;
+
+        for (int owner = CheckersPiece.HUMAN_PLAYER; owner <= CheckersPiece.COMPUTER_PLAYER; owner++) {
+            int pieces = position.pieces(owner);
+
+            while (pieces != 0) {
+                int bit = Integer.numberOfTrailingZeros(pieces);
+                int type = (position.kings() & (1 << bit)) != 0 ? CheckersPiece.KING : CheckersPiece.CHECKER;
+                key ^= PIECE_KEYS[owner * 2 + type][bit];
+                pieces &= pieces - 1;
+            }
+        }
+        return key;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Tests that the states of random games come back unchanged from
+ * PositionCodec, and their moves from PdnWriter and PdnReader, and that
+ * malformed positions are refused.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class PositionCodecTest {
+
+    private static final int GAMES = 50;
+    private static final int MAX_MOVES = 150;
+
+    // every state of the random games is encoded, formatted, parsed and decoded back to itself
+    @Test
+    public void positionsRoundTrip() {
+        Random random = new Random(1);
+
+        for (int i = 0; i < GAMES; i++) {
+            playRandomGame(random, (game, player) -> {
+                long[] words = PositionCodec.encode(game, player);
+                String text = PositionCodec.format(game, player);
+                long[] parsed = new long[PositionCodec.WORDS];
+                PositionCodec.parse(text, parsed, 0);
+
+                assertArrayEquals(words, parsed, text);
+                assertEquals(player, PositionCodec.player(parsed, 0), text);
+                CheckersGame decoded = PositionCodec.decode(parsed, 0);
+                assertEquals(game.hashKey(player), decoded.hashKey(player), text);
+                assertEquals(text, PositionCodec.format(decoded, player));
+            });
+        }
+    }
+
+    // a reversed range, a square taken twice, a player listed twice, a square off the board and trailing text
+    @Test
+    public void parseRefusesMalformedPositions() {
+        assertThrows(IllegalArgumentException.class, () -> PositionCodec.parse("W:W7-5:B1"));
+        assertThrows(IllegalArgumentException.class, () -> PositionCodec.parse("W:W5,5:B1"));
+        assertThrows(IllegalArgumentException.class, () -> PositionCodec.parse("W:W5:W1"));
+        assertThrows(IllegalArgumentException.class, () -> PositionCodec.parse("W:W33:B1"));
+        assertThrows(IllegalArgumentException.class, () -> PositionCodec.parse("W:W21-32:B1-12x"));
+    }
+
+    // the random games are written by PdnWriter and read back by PdnReader with the same moves and results
+    @Test
+    public void gamesRoundTrip() throws Exception {
+        Random random = new Random(2);
+        List<PdnGame> games = new ArrayList<PdnGame>();
+        StringWriter text = new StringWriter();
+
+        try (PdnWriter writer = new PdnWriter(text)) {
+            for (int i = 0; i < GAMES; i++) {
+                PdnGame game = new PdnGame();
+                int winner = playRandomGame(random, null, game);
+                game.setResult(winner == CheckersPiece.HUMAN_PLAYER ? PdnGame.WHITE_WINS
+                        : winner == CheckersPiece.COMPUTER_PLAYER ? PdnGame.BLACK_WINS : PdnGame.DRAWN);
+                game.setTag("Round", Integer.toString(i + 1));
+                writer.write(game);
+                games.add(game);
+            }
+        }
+
+        byte[] bytes = text.toString().getBytes(StandardCharsets.ISO_8859_1);
+        try (PdnReader reader = new PdnReader(Channels.newChannel(new ByteArrayInputStream(bytes)), 4096)) {
+            for (PdnGame game : games) {
+                PdnGame read = reader.next();
+                assertEquals(game.getTag("Round"), read.getTag("Round"));
+                assertEquals(game.getResult(), read.getResult());
+                assertArrayEquals(squares(game.getHops()), squares(read.getHops()), "game " + game.getTag("Round"));
+            }
+            assertNull(reader.next());
+        }
+    }
+
+    // returns the squares of the hops, without the flags that addHop cannot know, such as promotions
+    private static int[] squares(int[] hops) {
+        int[] squares = new int[hops.length];
+        for (int i = 0; i < hops.length; i++) {
+            squares[i] = CheckersMove.source(hops[i]) << 8 | CheckersMove.dest(hops[i]);
+        }
+        return squares;
+    }
+
+    private interface StateCheck {
+        void check(CheckersGame game, int player);
+    }
+
+    private static int playRandomGame(Random random, StateCheck check) {
+        return playRandomGame(random, check, null);
+    }
+
+    /*
+     * Plays random moves from the start position until the game ends or
+     * MAX_MOVES hops were made, checking every state reached and recording
+     * the hops, either of which may be null. Returns the winner, or -1.
+     */
+    private static int playRandomGame(Random random, StateCheck check, PdnGame record) {
+        CheckersGame game = new CheckersGame();
+        MoveList moves = new MoveList();
+        int player = CheckersPiece.HUMAN_PLAYER;
+
+        game.setAI(CheckersGame.NO_AI);
+        for (int i = 0; i < MAX_MOVES && game.winner(player) == -1; i++) {
+            if (check != null) {
+                check.check(game, player);
+            }
+
+            game.generateMoves(player, moves);
+            int move = moves.get(random.nextInt(moves.size()));
+            game.makeMove(move);
+            if (record != null) {
+                record.addHop(CheckersMove.source(move), CheckersMove.dest(move));
+            }
+            if (!game.canAttackAgain()) {
+                player = (player + 1) % 2;
+            }
+        }
+        return game.winner(player);
+    }
+}
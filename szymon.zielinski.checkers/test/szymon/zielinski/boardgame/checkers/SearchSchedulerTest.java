@@ -0,0 +1,107 @@
+/*
+ * Tests that SearchScheduler lets a search of a low priority end, by its
+ * deadline or by waiting long enough, while searches of a higher priority
+ * keep coming.
+ */
+package szymon.zielinski.boardgame.checkers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SearchSchedulerTest {
+
+    private SearchScheduler scheduler;
+    private final AtomicBoolean loaded = new AtomicBoolean(true);
+    private final List<Thread> clients = new ArrayList<Thread>();
+
+    @BeforeEach
+    public void setUp() {
+        scheduler = new SearchScheduler(1, 4, 100, Duration.ofMillis(5));
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        loaded.set(false);
+        for (Thread client : clients) {
+            client.join();
+        }
+        scheduler.close();
+    }
+
+    // a paused search ends at its deadline, though searches of a higher priority are still waiting
+    @Test
+    public void pausedSearchEndsAtItsDeadline() throws Exception {
+        long start = System.nanoTime();
+        Future<Long> search = scheduler.submit(-6, 1, Duration.ofMillis(500), work(Long.MAX_VALUE));
+        startClients(2);
+
+        search.get(1500, TimeUnit.MILLISECONDS);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsed < 1000, "ended after " + elapsed + " ms");
+    }
+
+    // a search with no deadline gains priority as it waits, and ends while searches of a higher priority keep coming
+    @Test
+    public void waitingSearchGainsPriority() throws Exception {
+        long work = TimeUnit.MILLISECONDS.toNanos(20);
+        Future<Long> search = scheduler.submit(-6, 1, null, work(work));
+        startClients(2);
+
+        assertEquals(work, (long) search.get(5, TimeUnit.SECONDS));
+    }
+
+    // starts clients that each submit one short search of priority -1 after the other, until the test ends
+    private void startClients(int count) {
+        for (int i = 0; i < count; i++) {
+            Thread client = new Thread(() -> {
+                while (loaded.get()) {
+                    try {
+                        scheduler.submit(-1, 1, Duration.ofSeconds(5), work(TimeUnit.MILLISECONDS.toNanos(3))).get();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            clients.add(client);
+            client.start();
+        }
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Returns a search that keeps the processor busy for the given time, not
+     * counting the time it is paused, or until its deadline, running the
+     * checkpoint every 50 microseconds. The search returns the time it ran.
+     */
+    private static SearchScheduler.Search<Long> work(long nanos) {
+        return (maxDepth, deadline, checkpoint) -> {
+            long ran = 0;
+
+            while (ran < nanos && System.nanoTime() - deadline < 0) {
+                long start = System.nanoTime();
+                while (System.nanoTime() - start < 50000) {
+                    Thread.onSpinWait();
+                }
+                ran = Math.min(nanos, ran + System.nanoTime() - start);
+                checkpoint.run();
+            }
+            return ran;
+        };
+    }
+}